@@ -0,0 +1,566 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2016 Sven Olderaan, http://knockturnmc.com/
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE
+ */
+
+package com.knockturnmc.api.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+
+/**
+ * Executes the requests of a {@link RestClient} on a bounded pool of worker threads
+ * and returns the results as {@link CompletableFuture}s, so the caller never blocks.
+ * <p>
+ * At most {@code maxInFlight} requests are executed at the same time, further requests are queued.
+ * The amount of concurrent connections to a single host is limited by {@code maxConnectionsPerHost},
+ * requests exceeding it wait in a queue of their host without occupying a worker thread.
+ * Response bodies are always consumed and closed, so connections are kept alive and reused
+ * by the keep-alive cache of {@link java.net.HttpURLConnection}, which holds up to
+ * {@code http.maxConnections} idle connections per host.
+ * <p>
+ * GET requests are idempotent and can optionally be hedged and retried, see {@link #setHedging(double, long, TimeUnit)}
+ * and {@link #setRetries(int, long, long, TimeUnit)}. The client keeps a {@link LatencyHistogram} for every endpoint,
+ * which is the host and path of the URL without the query. A {@link CircuitBreaker} per host can reject requests
+ * to hosts that keep failing, see {@link #setCircuitBreaker(int, long, TimeUnit)}.
+ */
+public class AsyncRestClient implements Closeable {
+
+    private static final AtomicInteger poolCounter = new AtomicInteger();
+
+    private final RestClient client;
+    private final ExecutorService executor;
+    private final int maxConnectionsPerHost;
+    private final ConcurrentMap<String, HostQueue> hosts = new ConcurrentHashMap<>();
+    private final ScheduledThreadPoolExecutor scheduler;
+    private final ConcurrentMap<String, LatencyHistogram> latencies = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+    private final LongAdder hedges = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+
+    private volatile double hedgePercentile;
+    private volatile long minHedgeDelay;
+    private volatile int maxRetries;
+    private volatile long baseBackoff;
+    private volatile long maxBackoff;
+    private volatile int failureThreshold;
+    private volatile long openDuration;
+
+    /**
+     * Creates a new async client
+     *
+     * @param client                the client that executes the requests
+     * @param maxInFlight           the maximum amount of requests that are executed at the same time
+     * @param maxConnectionsPerHost the maximum amount of concurrent connections to a single host
+     */
+    public AsyncRestClient(RestClient client, int maxInFlight, int maxConnectionsPerHost) {
+        if (client == null)
+            throw new IllegalArgumentException("client can not be null");
+        if (maxInFlight < 1 || maxConnectionsPerHost < 1)
+            throw new IllegalArgumentException("limits must be positive");
+        this.client = client;
+        this.maxConnectionsPerHost = maxConnectionsPerHost;
+
+        String prefix = "RestClient-" + poolCounter.incrementAndGet() + "-";
+        AtomicInteger threadCounter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(maxInFlight, maxInFlight, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, prefix + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        ((ThreadPoolExecutor) executor).allowCoreThreadTimeOut(true);
+
+        this.scheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, prefix + "scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * Enables hedging of GET requests. If a request did not respond within the given percentile
+     * of the recorded latencies of its endpoint, a second identical request is sent.
+     * The first successful response wins and the other request is cancelled.
+     * A request that is already executing can not be interrupted, its response is discarded.
+     *
+     * @param percentile the percentile of the latencies after which a request is hedged,
+     *                   for example {@code 0.95}, or {@code 0} to disable hedging, which is the default
+     * @param minDelay   the minimum delay before a request is hedged, which is also used until latencies were recorded
+     * @param unit       the unit of the delay
+     */
+    public void setHedging(double percentile, long minDelay, TimeUnit unit) {
+        if (percentile < 0 || percentile > 1)
+            throw new IllegalArgumentException("percentile must be between 0 and 1");
+        if (minDelay < 0)
+            throw new IllegalArgumentException("minDelay can not be negative");
+        this.minHedgeDelay = unit.toNanos(minDelay);
+        this.hedgePercentile = percentile;
+    }
+
+    /**
+     * Enables retries of failed GET requests.
+     * Requests are retried if the connection failed or the server responded with a transient error,
+     * see {@link HttpStatusException#isTransient()}. Between attempts the client waits a random time
+     * between zero and the exponential backoff of the attempt, so retries of many clients do not align.
+     *
+     * @param maxRetries  the maximum amount of retries or {@code 0} to disable retries, which is the default
+     * @param baseBackoff the backoff of the first retry, which doubles with every further retry
+     * @param maxBackoff  the maximum backoff
+     * @param unit        the unit of the backoffs
+     */
+    public void setRetries(int maxRetries, long baseBackoff, long maxBackoff, TimeUnit unit) {
+        if (maxRetries < 0 || baseBackoff < 0 || maxBackoff < baseBackoff)
+            throw new IllegalArgumentException("invalid retry settings");
+        this.baseBackoff = unit.toNanos(baseBackoff);
+        this.maxBackoff = unit.toNanos(maxBackoff);
+        this.maxRetries = maxRetries;
+    }
+
+    /**
+     * Enables a circuit breaker per host. Connection failures and transient errors count as failures.
+     * While the breaker of a host is open, requests to it fail immediately and are not retried.
+     *
+     * @param failureThreshold the amount of consecutive failures that open the breaker or {@code 0} to disable
+     *                         the breakers, which is the default
+     * @param openDuration     the time the breaker stays open before a trial request is let through
+     * @param unit             the unit of the duration
+     */
+    public void setCircuitBreaker(int failureThreshold, long openDuration, TimeUnit unit) {
+        if (failureThreshold < 0 || openDuration < 0)
+            throw new IllegalArgumentException("invalid circuit breaker settings");
+        this.openDuration = unit.toNanos(openDuration);
+        this.failureThreshold = failureThreshold;
+        breakers.clear();
+    }
+
+    /**
+     * Gets the latencies of successful requests to the endpoint of the given URL
+     *
+     * @param path the URL
+     * @return the latencies or {@code null} if no request to the endpoint was executed
+     */
+    public LatencyHistogram getLatency(String path) {
+        try {
+            return latencies.get(getEndpoint(new URL(path)));
+        } catch (MalformedURLException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Gets the circuit breaker of the host of the given URL
+     *
+     * @param path the URL
+     * @return the breaker or {@code null} if breakers are disabled or no request to the host was executed
+     */
+    public CircuitBreaker getCircuitBreaker(String path) {
+        try {
+            return breakers.get(new URL(path).getAuthority());
+        } catch (MalformedURLException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Gets the amount of hedged requests that were sent
+     *
+     * @return the amount of hedged requests
+     */
+    public long getHedges() {
+        return hedges.sum();
+    }
+
+    /**
+     * Gets the amount of retries that were sent
+     *
+     * @return the amount of retries
+     */
+    public long getRetries() {
+        return retries.sum();
+    }
+
+    /**
+     * Gets the client that executes the requests
+     *
+     * @return the client
+     */
+    public RestClient getClient() {
+        return client;
+    }
+
+    /**
+     * Executes a HTTP GET request to the given URL
+     *
+     * @param path the path to execute a request
+     * @return the future response
+     * @see RestClient#doGet(String)
+     */
+    public CompletableFuture<String> doGet(String path) {
+        return submitIdempotent(path, () -> client.doGet(path));
+    }
+
+    /**
+     * Executes a HTTP GET request to the given URL
+     *
+     * @param path the path to execute a request
+     * @return the future raw response body
+     * @see RestClient#doGetBytes(String)
+     */
+    public CompletableFuture<byte[]> doGetBytes(String path) {
+        return submitIdempotent(path, () -> client.doGetBytes(path));
+    }
+
+    /**
+     * Executes a HTTP GET request to the given URL and decodes the response
+     *
+     * @param path the path to execute a request
+     * @param type the type of the response
+     * @param <T>  the type of the response
+     * @return the future decoded response
+     * @see RestClient#doGet(String, Class)
+     */
+    public <T> CompletableFuture<T> doGet(String path, Class<T> type) {
+        return submitIdempotent(path, () -> client.doGet(path, type));
+    }
+
+    /**
+     * Executes a HTTP POST request to the given URL and decodes the response
+     *
+     * @param path the path to execute a request
+     * @param body the request body
+     * @param type the type of the response
+     * @param <T>  the type of the response
+     * @return the future decoded response
+     * @see RestClient#doPost(String, Object, Class)
+     */
+    public <T> CompletableFuture<T> doPost(String path, Object body, Class<T> type) {
+        return execute(path, () -> client.doPost(path, body, type));
+    }
+
+    /**
+     * Executes a HTTP POST request to the given URL
+     *
+     * @param path the path to execute a request
+     * @param body the request body
+     * @return the future response
+     * @see RestClient#doPost(String, String)
+     */
+    public CompletableFuture<String> doPost(String path, String body) {
+        return execute(path, () -> client.doPost(path, body));
+    }
+
+    /**
+     * Executes an idempotent request, which is hedged and retried if enabled
+     *
+     * @param path    the path of the request
+     * @param request the request
+     * @param <T>     the type of the response
+     * @return the future response
+     */
+    protected <T> CompletableFuture<T> submitIdempotent(String path, Request<T> request) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        attempt(path, request, result, 0);
+        return result;
+    }
+
+    private <T> void attempt(String path, Request<T> request, CompletableFuture<T> result, int attempt) {
+        hedge(path, request).whenComplete((value, error) -> {
+            if (error == null) {
+                result.complete(value);
+                return;
+            }
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            if (attempt >= maxRetries || !isRetryable(cause) || result.isDone()) {
+                result.completeExceptionally(cause);
+                return;
+            }
+            try {
+                scheduler.schedule(() -> attempt(path, request, result, attempt + 1), getBackoff(attempt), TimeUnit.NANOSECONDS);
+                retries.increment();
+            } catch (RejectedExecutionException e) {
+                result.completeExceptionally(cause);
+            }
+        });
+    }
+
+    private <T> CompletableFuture<T> hedge(String path, Request<T> request) {
+        CompletableFuture<T> primary = execute(path, request);
+        double percentile = hedgePercentile;
+        if (percentile <= 0 || primary.isDone())
+            return primary;
+
+        CompletableFuture<T> result = new CompletableFuture<>();
+        AtomicInteger pending = new AtomicInteger(1);
+        List<CompletableFuture<T>> attempts = new CopyOnWriteArrayList<>();
+        BiConsumer<T, Throwable> complete = (value, error) -> {
+            if (error == null) {
+                if (result.complete(value))
+                    attempts.forEach(future -> future.cancel(true));
+            } else if (pending.decrementAndGet() == 0) {
+                result.completeExceptionally(error);
+            }
+        };
+        attempts.add(primary);
+
+        ScheduledFuture<?> timer;
+        try {
+            timer = scheduler.schedule(() -> {
+                if (result.isDone())
+                    return;
+                pending.incrementAndGet();
+                hedges.increment();
+                // a hedge must not join the request it hedges if the client coalesces requests
+                CompletableFuture<T> hedged = execute(path, () -> RestClient.executeUncoalesced(request::execute));
+                attempts.add(hedged);
+                hedged.whenComplete(complete);
+                if (result.isDone())
+                    hedged.cancel(true);
+            }, getHedgeDelay(path, percentile), TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException e) {
+            return primary;
+        }
+        primary.whenComplete(complete);
+        result.whenComplete((value, error) -> timer.cancel(false));
+        return result;
+    }
+
+    /**
+     * Executes a single attempt of a request, recording its latency and the health of the host
+     */
+    private <T> CompletableFuture<T> execute(String path, Request<T> request) {
+        URL url;
+        try {
+            url = new URL(path);
+        } catch (MalformedURLException e) {
+            CompletableFuture<T> future = new CompletableFuture<>();
+            future.completeExceptionally(e);
+            return future;
+        }
+        String host = url.getAuthority();
+        LatencyHistogram histogram = latencies.computeIfAbsent(getEndpoint(url), endpoint -> new LatencyHistogram());
+        CircuitBreaker breaker = getBreaker(host);
+        return submit(path, () -> {
+            if (breaker != null && !breaker.allowRequest())
+                throw new CircuitOpenException(host);
+            long start = System.nanoTime();
+            boolean healthy = false;
+            try {
+                T value = request.execute();
+                histogram.record(System.nanoTime() - start);
+                healthy = true;
+                return value;
+            } catch (HttpStatusException e) {
+                healthy = !e.isTransient();
+                throw e;
+            } finally {
+                if (breaker != null) {
+                    if (healthy)
+                        breaker.onSuccess();
+                    else
+                        breaker.onFailure();
+                }
+            }
+        });
+    }
+
+    private CircuitBreaker getBreaker(String host) {
+        int threshold = failureThreshold;
+        if (threshold == 0)
+            return null;
+        long duration = openDuration;
+        return breakers.computeIfAbsent(host, key -> new CircuitBreaker(threshold, duration, TimeUnit.NANOSECONDS));
+    }
+
+    private long getHedgeDelay(String path, double percentile) {
+        LatencyHistogram histogram = getLatency(path);
+        long delay = histogram != null ? histogram.getPercentile(percentile, TimeUnit.NANOSECONDS) : 0;
+        return Math.max(minHedgeDelay, delay);
+    }
+
+    private long getBackoff(int attempt) {
+        long backoff = Math.min(maxBackoff, baseBackoff << Math.min(attempt, 30));
+        if (backoff < 0)
+            backoff = maxBackoff;
+        return ThreadLocalRandom.current().nextLong(backoff + 1);
+    }
+
+    private static boolean isRetryable(Throwable t) {
+        if (t instanceof HttpStatusException)
+            return ((HttpStatusException) t).isTransient();
+        return t instanceof IOException && !(t instanceof CircuitOpenException) && !(t instanceof MalformedURLException);
+    }
+
+    private static String getEndpoint(URL url) {
+        return url.getAuthority() + url.getPath();
+    }
+
+    /**
+     * Executes a request on the worker threads, respecting the connection limit of the host
+     *
+     * @param path    the path of the request
+     * @param request the request
+     * @param <T>     the type of the response
+     * @return the future response
+     */
+    protected <T> CompletableFuture<T> submit(String path, Request<T> request) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        String host;
+        try {
+            host = new URL(path).getAuthority();
+        } catch (IOException e) {
+            future.completeExceptionally(e);
+            return future;
+        }
+
+        Pending task = new Pending(future, () -> {
+            try {
+                future.complete(request.execute());
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            }
+        });
+        while (!hosts.computeIfAbsent(host, HostQueue::new).enqueue(task)) {
+            // the queue was removed while idle, a new one is created
+        }
+        return future;
+    }
+
+    /**
+     * Stops accepting new requests. Requests that were already submitted are still executed,
+     * but are neither hedged nor retried anymore.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+        scheduler.shutdown();
+    }
+
+    /**
+     * A blocking request
+     *
+     * @param <T> the type of the response
+     */
+    @FunctionalInterface
+    protected interface Request<T> {
+        T execute() throws IOException;
+    }
+
+    /**
+     * A request waiting for a connection to its host
+     */
+    private static final class Pending {
+        private final CompletableFuture<?> future;
+        private final Runnable task;
+
+        private Pending(CompletableFuture<?> future, Runnable task) {
+            this.future = future;
+            this.task = task;
+        }
+    }
+
+    /**
+     * The requests of a host. Only requests holding one of the connections of the host are handed to the workers,
+     * so a slow host never blocks workers that could execute requests to other hosts.
+     * The queue is removed once the host is idle.
+     */
+    private final class HostQueue {
+        private final String host;
+        private final ArrayDeque<Pending> waiting = new ArrayDeque<>();
+        private int active;
+        private boolean removed;
+
+        private HostQueue(String host) {
+            this.host = host;
+        }
+
+        /**
+         * Executes or queues a request
+         *
+         * @return false if the queue was already removed
+         */
+        private boolean enqueue(Pending pending) {
+            synchronized (this) {
+                if (removed)
+                    return false;
+                if (active >= maxConnectionsPerHost) {
+                    waiting.add(pending);
+                    return true;
+                }
+                active++;
+            }
+            if (!dispatch(pending))
+                release();
+            return true;
+        }
+
+        private boolean dispatch(Pending pending) {
+            try {
+                executor.execute(() -> {
+                    try {
+                        if (!pending.future.isDone())
+                            pending.task.run();
+                    } finally {
+                        release();
+                    }
+                });
+                return true;
+            } catch (RejectedExecutionException e) {
+                pending.future.completeExceptionally(e);
+                return false;
+            }
+        }
+
+        private void release() {
+            while (true) {
+                Pending next;
+                synchronized (this) {
+                    do {
+                        next = waiting.poll();
+                    } while (next != null && next.future.isDone());
+                    if (next == null) {
+                        if (--active == 0) {
+                            removed = true;
+                            hosts.remove(host, this);
+                        }
+                        return;
+                    }
+                }
+                if (dispatch(next))
+                    return;
+            }
+        }
+    }
+
+    private static final class CircuitOpenException extends IOException {
+        private CircuitOpenException(String host) {
+            super("Circuit breaker of " + host + " is open");
+        }
+    }
+}
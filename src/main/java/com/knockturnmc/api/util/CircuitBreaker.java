@@ -0,0 +1,122 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2016 Sven Olderaan, http://knockturnmc.com/
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE
+ */
+
+package com.knockturnmc.api.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A circuit breaker that stops requests after a number of consecutive failures.
+ * Once open, all requests are rejected until the open duration elapsed, then a single
+ * trial request is let through. If it succeeds the breaker closes, otherwise it opens again.
+ */
+public class CircuitBreaker {
+
+    /**
+     * The state of a circuit breaker
+     */
+    public enum State {
+        /**
+         * Requests are let through
+         */
+        CLOSED,
+        /**
+         * Requests are rejected
+         */
+        OPEN,
+        /**
+         * A single trial request is let through
+         */
+        HALF_OPEN
+    }
+
+    private final int failureThreshold;
+    private final long openNanos;
+    private final AtomicInteger failures = new AtomicInteger();
+    private final AtomicBoolean trial = new AtomicBoolean();
+    private volatile boolean open;
+    private volatile long openedAt;
+
+    /**
+     * Creates a new circuit breaker
+     *
+     * @param failureThreshold the amount of consecutive failures that open the breaker
+     * @param openDuration     the time the breaker stays open before a trial request is let through
+     * @param unit             the unit of the duration
+     */
+    public CircuitBreaker(int failureThreshold, long openDuration, TimeUnit unit) {
+        if (failureThreshold < 1)
+            throw new IllegalArgumentException("failureThreshold must be positive");
+        if (openDuration < 0)
+            throw new IllegalArgumentException("openDuration can not be negative");
+        this.failureThreshold = failureThreshold;
+        this.openNanos = unit.toNanos(openDuration);
+    }
+
+    /**
+     * Checks whether a request may be executed.
+     * In the half open state only the first caller is allowed.
+     *
+     * @return true if the request may be executed
+     */
+    public boolean allowRequest() {
+        if (!open)
+            return true;
+        if (System.nanoTime() - openedAt < openNanos)
+            return false;
+        return trial.compareAndSet(false, true);
+    }
+
+    /**
+     * Records a successful request and closes the breaker
+     */
+    public void onSuccess() {
+        failures.set(0);
+        open = false;
+        trial.set(false);
+    }
+
+    /**
+     * Records a failed request
+     */
+    public void onFailure() {
+        if (open || failures.incrementAndGet() >= failureThreshold) {
+            openedAt = System.nanoTime();
+            open = true;
+            trial.set(false);
+        }
+    }
+
+    /**
+     * Gets the current state
+     *
+     * @return the state
+     */
+    public State getState() {
+        if (!open)
+            return State.CLOSED;
+        return System.nanoTime() - openedAt < openNanos ? State.OPEN : State.HALF_OPEN;
+    }
+}
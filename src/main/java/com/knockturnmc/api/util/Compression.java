@@ -0,0 +1,293 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2016 Sven Olderaan, http://knockturnmc.com/
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE
+ */
+
+package com.knockturnmc.api.util;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.*;
+
+/**
+ * Streaming gzip and deflate support for the {@link RestClient}.
+ * {@link Inflater}s, {@link Deflater}s and buffers are pooled instead of being allocated for every request.
+ */
+final class Compression {
+
+    private static final int MAX_POOLED = 32;
+
+    private static final int GZIP_MAGIC = 0x8b1f;
+    private static final int FHCRC = 2;
+    private static final int FEXTRA = 4;
+    private static final int FNAME = 8;
+    private static final int FCOMMENT = 16;
+    private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+    private static final BlockingQueue<Inflater> gzipInflaters = new ArrayBlockingQueue<>(MAX_POOLED);
+    private static final BlockingQueue<Inflater> zlibInflaters = new ArrayBlockingQueue<>(MAX_POOLED);
+    private static final BlockingQueue<Deflater> deflaters = new ArrayBlockingQueue<>(MAX_POOLED);
+
+    private Compression() {
+    }
+
+    /**
+     * Wraps a stream so it is decompressed while it is read.
+     * The stream is only read once the returned stream is read, an empty stream is decompressed to an empty stream.
+     * The gzip trailer is verified once the end of the compressed data is reached.
+     *
+     * @param in       the compressed stream
+     * @param encoding the content encoding of the stream
+     * @return the decompressing stream, or the stream itself if it is not compressed
+     * @throws IOException if the encoding is not supported
+     */
+    static InputStream decompress(InputStream in, String encoding) throws IOException {
+        if (encoding == null)
+            return in;
+        switch (encoding.trim().toLowerCase(Locale.ROOT)) {
+            case "":
+            case "identity":
+                return in;
+            case "gzip":
+            case "x-gzip":
+                return new InflatingInputStream(in, gzipInflaters, true);
+            case "deflate":
+                return new InflatingInputStream(in, zlibInflaters, false);
+            default:
+                throw new IOException("Unsupported content encoding " + encoding);
+        }
+    }
+
+    /**
+     * Writes data gzip compressed to a stream
+     *
+     * @param data the data
+     * @param out  the stream
+     * @throws IOException if the data could not be written
+     */
+    static void gzip(byte[] data, OutputStream out) throws IOException {
+        Deflater deflater = deflaters.poll();
+        if (deflater == null)
+            deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        ByteBuffer buffer = ByteBufferPool.DEFAULT.acquire();
+        try {
+            out.write(GZIP_HEADER);
+            deflater.setInput(data);
+            deflater.finish();
+            byte[] array = buffer.array();
+            while (!deflater.finished()) {
+                int count = deflater.deflate(array, 0, array.length);
+                out.write(array, 0, count);
+            }
+
+            CRC32 crc = new CRC32();
+            crc.update(data, 0, data.length);
+            writeInt(out, (int) crc.getValue());
+            writeInt(out, data.length);
+        } finally {
+            ByteBufferPool.DEFAULT.release(buffer);
+            deflater.reset();
+            if (!deflaters.offer(deflater))
+                deflater.end();
+        }
+    }
+
+    private static void writeInt(OutputStream out, int value) throws IOException {
+        out.write(value & 0xff);
+        out.write((value >>> 8) & 0xff);
+        out.write((value >>> 16) & 0xff);
+        out.write((value >>> 24) & 0xff);
+    }
+
+    private static void readGzipHeader(InputStream in, int first) throws IOException {
+        if ((first | (readByte(in) << 8)) != GZIP_MAGIC)
+            throw new ZipException("Not in gzip format");
+        if (readByte(in) != Deflater.DEFLATED)
+            throw new ZipException("Unsupported gzip compression method");
+        int flags = readByte(in);
+        skip(in, 6);
+        if ((flags & FEXTRA) != 0)
+            skip(in, readShort(in));
+        if ((flags & FNAME) != 0)
+            skipString(in);
+        if ((flags & FCOMMENT) != 0)
+            skipString(in);
+        if ((flags & FHCRC) != 0)
+            skip(in, 2);
+    }
+
+    private static int readByte(InputStream in) throws IOException {
+        int value = in.read();
+        if (value < 0)
+            throw new EOFException("Unexpected end of gzip header");
+        return value;
+    }
+
+    private static int readShort(InputStream in) throws IOException {
+        return readByte(in) | (readByte(in) << 8);
+    }
+
+    private static void skip(InputStream in, int count) throws IOException {
+        for (int i = 0; i < count; i++) {
+            readByte(in);
+        }
+    }
+
+    private static void skipString(InputStream in) throws IOException {
+        while (readByte(in) != 0) {
+        }
+    }
+
+    /**
+     * Inflates a stream using a pooled {@link Inflater} and a pooled input buffer,
+     * both are returned to their pools when the stream is closed
+     */
+    private static final class InflatingInputStream extends InputStream {
+        private final InputStream in;
+        private final BlockingQueue<Inflater> pool;
+        private final Inflater inflater;
+        private final ByteBuffer buffer;
+        private final byte[] single = new byte[1];
+        private final CRC32 crc;
+        private boolean started;
+        private boolean ended;
+        private boolean closed;
+        private int input;
+
+        private InflatingInputStream(InputStream in, BlockingQueue<Inflater> pool, boolean nowrap) {
+            this.in = in;
+            this.pool = pool;
+            this.crc = nowrap ? new CRC32() : null;
+            Inflater inflater = pool.poll();
+            this.inflater = inflater != null ? inflater : new Inflater(nowrap);
+            this.buffer = ByteBufferPool.DEFAULT.acquire();
+        }
+
+        @Override
+        public int read() throws IOException {
+            return read(single, 0, 1) < 0 ? -1 : single[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (closed)
+                throw new IOException("Stream closed");
+            if (len == 0)
+                return 0;
+            if (ended)
+                return -1;
+            if (!started) {
+                started = true;
+                int first = in.read();
+                if (first < 0) {
+                    // responses without body, like 204 or 304, can still declare an encoding
+                    ended = true;
+                    return -1;
+                }
+                if (crc != null) {
+                    readGzipHeader(in, first);
+                } else {
+                    buffer.array()[0] = (byte) first;
+                    inflater.setInput(buffer.array(), 0, 1);
+                    input = 1;
+                }
+            }
+            try {
+                while (true) {
+                    int count = inflater.inflate(b, off, len);
+                    if (count > 0) {
+                        if (crc != null)
+                            crc.update(b, off, count);
+                        return count;
+                    }
+                    if (inflater.finished() || inflater.needsDictionary()) {
+                        ended = true;
+                        if (crc != null)
+                            readGzipTrailer();
+                        return -1;
+                    }
+                    if (inflater.needsInput()) {
+                        byte[] array = buffer.array();
+                        int read = in.read(array, 0, array.length);
+                        if (read < 0)
+                            throw new EOFException("Unexpected end of compressed stream");
+                        inflater.setInput(array, 0, read);
+                        input = read;
+                    }
+                }
+            } catch (DataFormatException e) {
+                throw new ZipException(e.getMessage());
+            }
+        }
+
+        private void readGzipTrailer() throws IOException {
+            long expectedCrc = readTrailerInt() & 0xffffffffL;
+            long expectedSize = readTrailerInt() & 0xffffffffL;
+            if (expectedCrc != crc.getValue())
+                throw new ZipException("Corrupt gzip trailer: crc mismatch");
+            if (expectedSize != (inflater.getBytesWritten() & 0xffffffffL))
+                throw new ZipException("Corrupt gzip trailer: size mismatch");
+        }
+
+        private int readTrailerInt() throws IOException {
+            int value = 0;
+            for (int i = 0; i < 4; i++) {
+                value |= readTrailerByte() << (i * 8);
+            }
+            return value;
+        }
+
+        private int readTrailerByte() throws IOException {
+            // the trailer starts with the input the inflater did not consume
+            int remaining = inflater.getRemaining();
+            if (remaining > 0) {
+                int value = buffer.array()[input - remaining] & 0xff;
+                inflater.setInput(buffer.array(), input - remaining + 1, remaining - 1);
+                return value;
+            }
+            int value = in.read();
+            if (value < 0)
+                throw new EOFException("Unexpected end of gzip trailer");
+            return value;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed)
+                return;
+            closed = true;
+            try {
+                in.close();
+            } finally {
+                ByteBufferPool.DEFAULT.release(buffer);
+                inflater.reset();
+                if (!pool.offer(inflater))
+                    inflater.end();
+            }
+        }
+    }
+}
@@ -0,0 +1,231 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2016 Sven Olderaan, http://knockturnmc.com/
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE
+ */
+
+package com.knockturnmc.api.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+
+/**
+ * Persists the resolved entries and field values of a {@link NamedProperties} instance to a binary sidecar file.
+ * The sidecar is keyed by the modification time and size of the source file and by the schema of the mapping,
+ * so it is only applied as long as neither of them changed.
+ * Applying a sidecar skips parsing the text file and converting the values.
+ * <p>
+ * Layout: magic, version, source mtime, source size, schema hash,
+ * the entries as length prefixed UTF-8 strings and a tagged value for every mapped field.
+ */
+final class ConfigurationCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConfigurationCache.class);
+
+    private static final int MAGIC = 0x4b435043;
+    private static final int VERSION = 1;
+    private static final String SUFFIX = ".cache";
+
+    private static final byte NULL = 0;
+    private static final byte INT = 1;
+    private static final byte LONG = 2;
+    private static final byte BOOLEAN = 3;
+    private static final byte STRING = 4;
+    private static final byte ENUM = 5;
+    private static final byte CONVERT = 6;
+    private static final byte DOUBLE = 7;
+    private static final byte FLOAT = 8;
+
+    private ConfigurationCache() {
+    }
+
+    /**
+     * Gets the sidecar file of a configuration file
+     *
+     * @param file the configuration file
+     * @return the sidecar file
+     */
+    static File getSidecar(File file) {
+        return new File(file.getAbsoluteFile().getParentFile(), file.getName() + SUFFIX);
+    }
+
+    /**
+     * Restores a configuration from its sidecar
+     *
+     * @param file    the configuration file
+     * @param mapping the mapped file
+     * @param <T>     the type of the mapped file
+     * @return the restored configuration or {@code null} if there is no up to date sidecar
+     */
+    static <T extends NamedProperties> T read(File file, Class<? extends T> mapping) {
+        File sidecar = getSidecar(file);
+        if (!sidecar.isFile())
+            return null;
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+            PropertyBinder binder = PropertyBinder.reflective(mapping);
+            try (FileChannel channel = FileChannel.open(sidecar.toPath(), StandardOpenOption.READ)) {
+                ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION
+                        || buffer.getLong() != attributes.lastModifiedTime().toMillis()
+                        || buffer.getLong() != attributes.size()
+                        || buffer.getLong() != binder.getSchemaHash())
+                    return null;
+
+                T instance = ConfigurationUtils.newInstance(mapping);
+                int entries = buffer.getInt();
+                for (int i = 0; i < entries; i++) {
+                    instance.put(readString(buffer), readString(buffer));
+                }
+                if (buffer.getInt() != binder.size())
+                    return null;
+                for (int i = 0; i < binder.size(); i++) {
+                    binder.set(i, instance, readValue(buffer, binder, i, instance));
+                }
+                instance.publishSnapshot();
+                return instance;
+            }
+        } catch (Exception e) {
+            logger.debug("Ignoring unreadable configuration cache " + sidecar, e);
+            return null;
+        }
+    }
+
+    /**
+     * Writes the sidecar of a loaded configuration
+     *
+     * @param file       the configuration file the instance was loaded from
+     * @param properties the loaded configuration
+     * @throws IOException if the sidecar could not be written
+     */
+    static void write(File file, NamedProperties properties) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+        PropertyBinder binder = PropertyBinder.reflective(properties.getClass());
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(attributes.lastModifiedTime().toMillis());
+        out.writeLong(attributes.size());
+        out.writeLong(binder.getSchemaHash());
+
+        synchronized (properties) {
+            int entries = 0;
+            for (Map.Entry<Object, Object> entry : properties.entrySet()) {
+                if (entry.getKey() instanceof String && entry.getValue() instanceof String)
+                    entries++;
+            }
+            out.writeInt(entries);
+            for (Map.Entry<Object, Object> entry : properties.entrySet()) {
+                if (entry.getKey() instanceof String && entry.getValue() instanceof String) {
+                    writeString(out, (String) entry.getKey());
+                    writeString(out, (String) entry.getValue());
+                }
+            }
+        }
+
+        out.writeInt(binder.size());
+        for (int i = 0; i < binder.size(); i++) {
+            writeValue(out, binder, i, binder.get(i, properties));
+        }
+        out.flush();
+        ConfigurationUtils.writeAtomically(getSidecar(file), bytes::writeTo);
+    }
+
+    private static void writeValue(DataOutputStream out, PropertyBinder binder, int index, Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(NULL);
+        } else if (value instanceof Integer) {
+            out.writeByte(INT);
+            out.writeInt((Integer) value);
+        } else if (value instanceof Long) {
+            out.writeByte(LONG);
+            out.writeLong((Long) value);
+        } else if (value instanceof Double) {
+            out.writeByte(DOUBLE);
+            out.writeDouble((Double) value);
+        } else if (value instanceof Float) {
+            out.writeByte(FLOAT);
+            out.writeFloat((Float) value);
+        } else if (value instanceof Boolean) {
+            out.writeByte(BOOLEAN);
+            out.writeBoolean((Boolean) value);
+        } else if (value instanceof String) {
+            out.writeByte(STRING);
+            writeString(out, (String) value);
+        } else if (value instanceof Enum && binder.getEnumType(index) != null) {
+            out.writeByte(ENUM);
+            out.writeInt(((Enum) value).ordinal());
+        } else {
+            out.writeByte(CONVERT);
+        }
+    }
+
+    private static Object readValue(ByteBuffer buffer, PropertyBinder binder, int index, NamedProperties instance) {
+        byte tag = buffer.get();
+        switch (tag) {
+            case NULL:
+                return null;
+            case INT:
+                return buffer.getInt();
+            case LONG:
+                return buffer.getLong();
+            case DOUBLE:
+                return buffer.getDouble();
+            case FLOAT:
+                return buffer.getFloat();
+            case BOOLEAN:
+                return buffer.get() != 0;
+            case STRING:
+                return readString(buffer);
+            case ENUM:
+                return binder.getEnumType(index).getEnumConstants()[buffer.getInt()];
+            case CONVERT:
+                return binder.convert(index, instance.getString(binder.getKey(index)));
+            default:
+                throw new IllegalStateException("Unknown value tag " + tag);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String string) throws IOException {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,66 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2016 Sven Olderaan, http://knockturnmc.com/
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE
+ */
+
+package com.knockturnmc.api.util;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Thrown if one or more configurations of a batch could not be loaded.
+ * Every failure is attached as a suppressed exception and can be looked up by its filename.
+ *
+ * @see ConfigurationUtils#loadConfigurations(ClassLoader, java.io.File, java.util.Collection)
+ */
+public class ConfigurationLoadException extends RuntimeException {
+
+    private final Map<String, Exception> errors;
+    private final Map<String, NamedProperties> loaded;
+
+    public ConfigurationLoadException(Map<String, Exception> errors, Map<String, NamedProperties> loaded) {
+        super("Failed to load configurations " + errors.keySet());
+        this.errors = Collections.unmodifiableMap(errors);
+        this.loaded = Collections.unmodifiableMap(loaded);
+        for (Exception e : errors.values()) {
+            addSuppressed(e);
+        }
+    }
+
+    /**
+     * Gets the errors of the failed configurations
+     *
+     * @return the errors by filename
+     */
+    public Map<String, Exception> getErrors() {
+        return errors;
+    }
+
+    /**
+     * Gets the configurations that were loaded successfully
+     *
+     * @return the configurations by filename
+     */
+    public Map<String, NamedProperties> getLoaded() {
+        return loaded;
+    }
+}
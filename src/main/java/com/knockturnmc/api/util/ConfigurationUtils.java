@@ -29,7 +29,18 @@ import org.slf4j.LoggerFactory;
 
 import java.io.*;
 import java.lang.reflect.Constructor;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 /**
  * Provides utilities for loading configurations and loading mapped {@link NamedProperties}
@@ -129,6 +140,7 @@ public final class ConfigurationUtils {
     /**
      * Loads a mapped {@link Properties} file and applies the mapping provided by the {@link NamedProperties}.
      * If the desired file was not found in the datafolder, a default file will be copied from the classpath.
+     * The file is only written back if keys were missing and had to be added with their default values.
      *
      * @param classLoader the classloader to use for the default file
      * @param filename    the filename
@@ -139,19 +151,7 @@ public final class ConfigurationUtils {
      */
     public static <T extends NamedProperties> T loadConfiguration(ClassLoader classLoader, String filename, File datafolder, Class<? extends T> mapping) {
         try {
-            File file = getConfigFile(classLoader, filename, datafolder);
-            Constructor<? extends T> constructor = mapping.getDeclaredConstructor();
-            constructor.setAccessible(true);
-            T properties = constructor.newInstance();
-            FileInputStream stream = new FileInputStream(file);
-            properties.load(stream);
-            stream.close();
-
-            OutputStream fos = new FileOutputStream(file);
-
-            properties.store(fos, "Configuration for " + filename);
-            fos.close();
-            return properties;
+            return loadMapped(classLoader, filename, datafolder, mapping);
         } catch (Exception e) {
             logger.warn("Failed to load configuration", e);
             throw new RuntimeException(e);
@@ -172,6 +172,265 @@ public final class ConfigurationUtils {
         return loadConfiguration(classLoader, filename, getDataFolder(), mapping);
     }
 
+    /**
+     * Loads a mapped {@link Properties} file like {@link #loadConfiguration(ClassLoader, String, File, Class)},
+     * but keeps a binary cache of the resolved values next to the file.
+     * As long as the file and the mapping did not change, the next load applies the cache
+     * instead of parsing and converting the text file.
+     *
+     * @param classLoader the classloader to use for the default file
+     * @param filename    the filename
+     * @param datafolder  the datafolder
+     * @param mapping     the mapped file
+     * @param <T>         the type of the mapped file
+     * @return the loaded configuration mapping
+     */
+    public static <T extends NamedProperties> T loadCachedConfiguration(ClassLoader classLoader, String filename, File datafolder, Class<? extends T> mapping) {
+        try {
+            File file = getConfigFile(classLoader, filename, datafolder);
+            T cached = ConfigurationCache.read(file, mapping);
+            if (cached != null)
+                return cached;
+
+            T properties = loadMapped(classLoader, filename, datafolder, mapping);
+            try {
+                ConfigurationCache.write(file, properties);
+            } catch (IOException e) {
+                logger.warn("Failed to write configuration cache", e);
+            }
+            return properties;
+        } catch (Exception e) {
+            logger.warn("Failed to load configuration", e);
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Loads a mapped {@link Properties} file from the current working directory
+     * like {@link #loadCachedConfiguration(ClassLoader, String, File, Class)}.
+     *
+     * @param classLoader the classloader to use for the default file
+     * @param filename    the filename
+     * @param mapping     the mapped file
+     * @param <T>         the type of the mapped file
+     * @return the loaded configuration mapping
+     */
+    public static <T extends NamedProperties> T loadCachedConfiguration(ClassLoader classLoader, String filename, Class<? extends T> mapping) {
+        return loadCachedConfiguration(classLoader, filename, getDataFolder(), mapping);
+    }
+
+    /**
+     * Loads a batch of mapped {@link Properties} files in parallel.
+     * Every file is resolved, copied from the classpath if missing and mapped
+     * like {@link #loadConfiguration(ClassLoader, String, File, Class)}.
+     * This method returns once all configurations are loaded.
+     *
+     * @param classLoader    the classloader to use for the default files
+     * @param datafolder     the datafolder
+     * @param configurations the filenames and their mappings
+     * @param parallelism    the maximum amount of files that are loaded at the same time
+     * @return the loaded configurations by filename, in the order they were passed
+     * @throws ConfigurationLoadException if any configuration failed to load
+     */
+    public static Map<String, NamedProperties> loadConfigurations(ClassLoader classLoader, File datafolder, Collection<Tuple<String, Class<? extends NamedProperties>>> configurations, int parallelism) {
+        if (parallelism < 1)
+            throw new IllegalArgumentException("parallelism must be positive");
+        // validate the whole batch before any file is touched or a thread is started
+        Map<String, Class<? extends NamedProperties>> mappings = new LinkedHashMap<>();
+        for (Tuple<String, Class<? extends NamedProperties>> configuration : configurations) {
+            if (mappings.putIfAbsent(configuration.get_0(), configuration.get_1()) != null)
+                throw new IllegalArgumentException("Duplicate configuration " + configuration.get_0());
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, Math.min(parallelism, mappings.size())));
+        try {
+            Map<String, ForkJoinTask<NamedProperties>> tasks = new LinkedHashMap<>();
+            for (Map.Entry<String, Class<? extends NamedProperties>> mapping : mappings.entrySet()) {
+                String filename = mapping.getKey();
+                Class<? extends NamedProperties> type = mapping.getValue();
+                tasks.put(filename, pool.submit(() -> loadMapped(classLoader, filename, datafolder, type)));
+            }
+
+            Map<String, NamedProperties> loaded = new LinkedHashMap<>();
+            Map<String, Exception> errors = new LinkedHashMap<>();
+            for (Map.Entry<String, ForkJoinTask<NamedProperties>> entry : tasks.entrySet()) {
+                try {
+                    loaded.put(entry.getKey(), entry.getValue().get());
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    errors.put(entry.getKey(), cause instanceof Exception ? (Exception) cause : e);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException("Interrupted while loading configurations", e);
+                }
+            }
+
+            if (!errors.isEmpty()) {
+                ConfigurationLoadException exception = new ConfigurationLoadException(errors, loaded);
+                logger.warn("Failed to load configuration", exception);
+                throw exception;
+            }
+            return loaded;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Loads a batch of mapped {@link Properties} files in parallel, using one thread per available processor.
+     *
+     * @param classLoader    the classloader to use for the default files
+     * @param datafolder     the datafolder
+     * @param configurations the filenames and their mappings
+     * @return the loaded configurations by filename, in the order they were passed
+     * @throws ConfigurationLoadException if any configuration failed to load
+     * @see #loadConfigurations(ClassLoader, File, Collection, int)
+     */
+    public static Map<String, NamedProperties> loadConfigurations(ClassLoader classLoader, File datafolder, Collection<Tuple<String, Class<? extends NamedProperties>>> configurations) {
+        return loadConfigurations(classLoader, datafolder, configurations, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Loads a batch of mapped {@link Properties} files from the current working directory in parallel.
+     *
+     * @param classLoader    the classloader to use for the default files
+     * @param configurations the filenames and their mappings
+     * @return the loaded configurations by filename, in the order they were passed
+     * @throws ConfigurationLoadException if any configuration failed to load
+     * @see #loadConfigurations(ClassLoader, File, Collection, int)
+     */
+    public static Map<String, NamedProperties> loadConfigurations(ClassLoader classLoader, Collection<Tuple<String, Class<? extends NamedProperties>>> configurations) {
+        return loadConfigurations(classLoader, getDataFolder(), configurations);
+    }
+
+    /**
+     * Loads a mapped {@link Properties} file like {@link #loadConfiguration(ClassLoader, String, File, Class)}
+     * and reloads it whenever the file changes.
+     * All watched files are observed by a single background thread, which re-parses a changed file,
+     * swaps in the new configuration and notifies the listeners about the changed keys.
+     *
+     * @param classLoader the classloader to use for the default file
+     * @param filename    the filename
+     * @param datafolder  the datafolder
+     * @param mapping     the mapped file
+     * @param <T>         the type of the mapped file
+     * @return the watched configuration
+     */
+    public static <T extends NamedProperties> WatchedConfiguration<T> watchConfiguration(ClassLoader classLoader, String filename, File datafolder, Class<? extends T> mapping) {
+        T initial = loadConfiguration(classLoader, filename, datafolder, mapping);
+        File file = new File(datafolder, filename);
+        WatchedConfiguration<T> configuration = new WatchedConfiguration<>(file, initial, () -> readConfiguration(file, mapping));
+        try {
+            ConfigurationWatcher.getInstance().register(configuration);
+        } catch (IOException e) {
+            logger.warn("Failed to watch configuration", e);
+            throw new RuntimeException(e);
+        }
+        return configuration;
+    }
+
+    /**
+     * Loads a mapped {@link Properties} file like {@link #loadConfiguration(ClassLoader, String, Class)}
+     * and reloads it whenever the file changes.
+     *
+     * @param classLoader the classloader to use for the default file
+     * @param filename    the filename
+     * @param mapping     the mapped file
+     * @param <T>         the type of the mapped file
+     * @return the watched configuration
+     * @see #watchConfiguration(ClassLoader, String, File, Class)
+     */
+    public static <T extends NamedProperties> WatchedConfiguration<T> watchConfiguration(ClassLoader classLoader, String filename, Class<? extends T> mapping) {
+        return watchConfiguration(classLoader, filename, getDataFolder(), mapping);
+    }
+
+    private static <T extends NamedProperties> T loadMapped(ClassLoader classLoader, String filename, File datafolder, Class<? extends T> mapping) throws Exception {
+        File file = getConfigFile(classLoader, filename, datafolder);
+        T properties = readConfiguration(file, mapping);
+        if (properties.hasAddedDefaults())
+            store(properties, file, "Configuration for " + filename);
+        return properties;
+    }
+
+    /**
+     * Creates a new instance of the mapping and loads the given file into it
+     *
+     * @param file    the file to read
+     * @param mapping the mapped file
+     * @param <T>     the type of the mapped file
+     * @return the loaded configuration mapping
+     * @throws Exception if the file could not be read or mapped
+     */
+    static <T extends NamedProperties> T readConfiguration(File file, Class<? extends T> mapping) throws Exception {
+        T properties = newInstance(mapping);
+        try (FileInputStream stream = new FileInputStream(file)) {
+            properties.load(stream);
+        }
+        return properties;
+    }
+
+    /**
+     * Creates a new instance of the mapping using its no-args constructor
+     *
+     * @param mapping the mapped file
+     * @param <T>     the type of the mapped file
+     * @return the new instance
+     * @throws ReflectiveOperationException if the mapping could not be instantiated
+     */
+    static <T extends NamedProperties> T newInstance(Class<? extends T> mapping) throws ReflectiveOperationException {
+        Constructor<? extends T> constructor = mapping.getDeclaredConstructor();
+        constructor.setAccessible(true);
+        return constructor.newInstance();
+    }
+
+    /**
+     * Writes the properties to a temporary file next to the target and atomically replaces the target with it
+     *
+     * @param properties the properties to store
+     * @param file       the target file
+     * @param comments   the comments to write
+     * @throws IOException if the file could not be written
+     */
+    static void store(Properties properties, File file, String comments) throws IOException {
+        writeAtomically(file, out -> properties.store(out, comments));
+    }
+
+    /**
+     * Writes to a temporary file next to the target and atomically replaces the target with it.
+     * The permissions of an existing target are kept.
+     *
+     * @param file   the target file
+     * @param writer writes the content
+     * @throws IOException if the file could not be written
+     */
+    static void writeAtomically(File file, ContentWriter writer) throws IOException {
+        Path target = file.toPath();
+        Path temp = Files.createTempFile(target.toAbsolutePath().getParent(), file.getName(), ".tmp");
+        try {
+            try (FileOutputStream out = new FileOutputStream(temp.toFile())) {
+                writer.write(out);
+                out.getFD().sync();
+            }
+            copyPermissions(target, temp);
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static void copyPermissions(Path source, Path target) throws IOException {
+        // temporary files are only readable by their owner, the replaced file must keep its permissions
+        if (!Files.exists(source))
+            return;
+        PosixFileAttributeView view = Files.getFileAttributeView(source, PosixFileAttributeView.class);
+        if (view != null)
+            Files.setPosixFilePermissions(target, view.readAttributes().permissions());
+    }
+
     /**
      * Gets the current working directory, this is also the default datafolder for all methods in {@link ConfigurationUtils}
      *
@@ -180,4 +439,9 @@ public final class ConfigurationUtils {
     public static File getDataFolder() {
         return new File(System.getProperty("user.dir"));
     }
+
+    @FunctionalInterface
+    interface ContentWriter {
+        void write(OutputStream out) throws IOException;
+    }
 }
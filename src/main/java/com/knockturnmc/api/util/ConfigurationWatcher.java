@@ -0,0 +1,166 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2016 Sven Olderaan, http://knockturnmc.com/
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE
+ */
+
+package com.knockturnmc.api.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+/**
+ * Watches the directories of all {@link WatchedConfiguration}s on a single background thread
+ */
+final class ConfigurationWatcher implements Runnable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConfigurationWatcher.class);
+    private static final long DEBOUNCE_MILLIS = 100;
+
+    private static ConfigurationWatcher instance;
+
+    private final WatchService service;
+    private final Map<Path, WatchKey> keys = new HashMap<>();
+    private final Map<WatchKey, Path> directories = new HashMap<>();
+    private final Map<Path, List<WatchedConfiguration<?>>> configurations = new HashMap<>();
+
+    private ConfigurationWatcher(WatchService service) {
+        this.service = service;
+    }
+
+    /**
+     * Gets the watcher, starting the watcher thread on first use
+     *
+     * @return the watcher
+     */
+    static synchronized ConfigurationWatcher getInstance() {
+        if (instance == null) {
+            try {
+                instance = new ConfigurationWatcher(FileSystems.getDefault().newWatchService());
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to create watch service", e);
+            }
+            Thread thread = new Thread(instance, "Configuration Watcher");
+            thread.setDaemon(true);
+            thread.start();
+        }
+        return instance;
+    }
+
+    synchronized void register(WatchedConfiguration<?> configuration) throws IOException {
+        Path file = normalize(configuration.getFile().toPath());
+        Path directory = file.getParent();
+        if (!keys.containsKey(directory)) {
+            WatchKey key = directory.register(service, ENTRY_CREATE, ENTRY_MODIFY);
+            keys.put(directory, key);
+            directories.put(key, directory);
+        }
+        configurations.computeIfAbsent(file, k -> new ArrayList<>()).add(configuration);
+    }
+
+    synchronized void unregister(WatchedConfiguration<?> configuration) {
+        Path file = normalize(configuration.getFile().toPath());
+        List<WatchedConfiguration<?>> list = configurations.get(file);
+        if (list == null || !list.remove(configuration))
+            return;
+        if (list.isEmpty())
+            configurations.remove(file);
+
+        Path directory = file.getParent();
+        for (Path path : configurations.keySet()) {
+            if (path.getParent().equals(directory))
+                return;
+        }
+        WatchKey key = keys.remove(directory);
+        if (key != null) {
+            directories.remove(key);
+            key.cancel();
+        }
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                Set<Path> changed = new LinkedHashSet<>();
+                collect(service.take(), changed);
+                // editors tend to write a file in several steps, wait for them to settle
+                Thread.sleep(DEBOUNCE_MILLIS);
+                WatchKey key;
+                while ((key = service.poll()) != null) {
+                    collect(key, changed);
+                }
+
+                for (Path path : changed) {
+                    for (WatchedConfiguration<?> configuration : getConfigurations(path)) {
+                        // a single broken configuration must not stop the watcher for all others
+                        try {
+                            configuration.reload();
+                        } catch (RuntimeException e) {
+                            logger.warn("Failed to reload configuration " + path, e);
+                        }
+                    }
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            logger.debug("Configuration watcher stopped");
+        }
+    }
+
+    private synchronized void collect(WatchKey key, Set<Path> changed) {
+        Path directory = directories.get(key);
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (directory == null)
+                continue;
+            try {
+                if (event.kind() == OVERFLOW) {
+                    for (Path path : configurations.keySet()) {
+                        if (path.getParent().equals(directory))
+                            changed.add(path);
+                    }
+                } else {
+                    changed.add(normalize(directory.resolve((Path) event.context())));
+                }
+            } catch (RuntimeException e) {
+                logger.warn("Failed to process file system event " + event.kind() + " in " + directory, e);
+            }
+        }
+        if (!key.reset() && directory != null) {
+            logger.warn("Directory {} is no longer accessible, configurations will not be reloaded", directory);
+            keys.remove(directory);
+            directories.remove(key);
+        }
+    }
+
+    private synchronized List<WatchedConfiguration<?>> getConfigurations(Path path) {
+        List<WatchedConfiguration<?>> list = configurations.get(path);
+        return list == null ? Collections.<WatchedConfiguration<?>>emptyList() : new ArrayList<>(list);
+    }
+
+    private static Path normalize(Path path) {
+        return path.toAbsolutePath().normalize();
+    }
+}
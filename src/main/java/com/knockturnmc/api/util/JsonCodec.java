@@ -0,0 +1,520 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2016 Sven Olderaan, http://knockturnmc.com/
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE
+ */
+
+package com.knockturnmc.api.util;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * A codec for flat JSON objects without nested objects.
+ * Collections and arrays are written as JSON arrays and flat arrays are read back into mapped collection
+ * and array fields, converting every element like a single property value.
+ * The body is parsed while it is read from the stream, so it is never held as a {@link String}.
+ */
+final class JsonCodec implements RestCodec {
+
+    private static final ClassValue<Mapping> MAPPINGS = new ClassValue<Mapping>() {
+        @Override
+        protected Mapping computeValue(Class<?> type) {
+            return new Mapping(type);
+        }
+    };
+
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+
+    @Override
+    public <T> T decode(InputStream stream, Charset charset, Class<T> type) throws IOException {
+        Parser parser = new Parser(new InputStreamReader(stream, charset));
+        if (Map.class.isAssignableFrom(type) && type.isAssignableFrom(LinkedHashMap.class)) {
+            Map<String, Object> map = new LinkedHashMap<>();
+            parser.readObject((key, token, quoted) -> map.put(key, quoted ? token : parseLiteral(token)), null);
+            return type.cast(map);
+        }
+
+        Mapping mapping = MAPPINGS.get(type);
+        T instance = mapping.newInstance(type);
+        parser.readObject((key, token, quoted) -> {
+            Member member = mapping.members.get(key);
+            if (member != null)
+                member.set(instance, token, quoted);
+        }, (key, elements) -> {
+            Member member = mapping.members.get(key);
+            if (member != null)
+                member.setElements(instance, elements);
+        });
+        return instance;
+    }
+
+    @Override
+    public void encode(Object value, OutputStream stream, Charset charset) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(stream, charset));
+        writer.write('{');
+        boolean first = true;
+        if (value instanceof Map) {
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                first = writeMember(writer, String.valueOf(entry.getKey()), entry.getValue(), first);
+            }
+        } else {
+            for (Member member : MAPPINGS.get(value.getClass()).members.values()) {
+                first = writeMember(writer, member.name, member.get(value), first);
+            }
+        }
+        writer.write('}');
+        writer.flush();
+    }
+
+    private static boolean writeMember(Writer writer, String name, Object value, boolean first) throws IOException {
+        if (!first)
+            writer.write(',');
+        writeString(writer, name);
+        writer.write(':');
+        writeValue(writer, value);
+        return false;
+    }
+
+    private static void writeValue(Writer writer, Object value) throws IOException {
+        if (value == null) {
+            writer.write("null");
+        } else if (value instanceof Boolean || (value instanceof Number && isFinite((Number) value))) {
+            writer.write(value.toString());
+        } else if (value instanceof Enum) {
+            writeString(writer, ((Enum) value).name());
+        } else if (value instanceof Iterable) {
+            writer.write('[');
+            boolean first = true;
+            for (Object element : (Iterable<?>) value) {
+                if (!first)
+                    writer.write(',');
+                writeValue(writer, element);
+                first = false;
+            }
+            writer.write(']');
+        } else if (value.getClass().isArray()) {
+            writer.write('[');
+            for (int i = 0, length = Array.getLength(value); i < length; i++) {
+                if (i > 0)
+                    writer.write(',');
+                writeValue(writer, Array.get(value, i));
+            }
+            writer.write(']');
+        } else {
+            writeString(writer, value.toString());
+        }
+    }
+
+    private static boolean isFinite(Number number) {
+        return !(number instanceof Double || number instanceof Float) || !Double.isInfinite(number.doubleValue()) && !Double.isNaN(number.doubleValue());
+    }
+
+    private static void writeString(Writer writer, String value) throws IOException {
+        writer.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    writer.write("\\\"");
+                    break;
+                case '\\':
+                    writer.write("\\\\");
+                    break;
+                case '\n':
+                    writer.write("\\n");
+                    break;
+                case '\r':
+                    writer.write("\\r");
+                    break;
+                case '\t':
+                    writer.write("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        writer.write(String.format("\\u%04x", (int) c));
+                    } else {
+                        writer.write(c);
+                    }
+            }
+        }
+        writer.write('"');
+    }
+
+    private static Object parseLiteral(String token) throws IOException {
+        switch (token) {
+            case "null":
+                return null;
+            case "true":
+                return Boolean.TRUE;
+            case "false":
+                return Boolean.FALSE;
+        }
+        try {
+            if (token.indexOf('.') < 0 && token.indexOf('e') < 0 && token.indexOf('E') < 0)
+                return Long.valueOf(token);
+            return Double.valueOf(token);
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid JSON value " + token, e);
+        }
+    }
+
+    @FunctionalInterface
+    private interface MemberHandler {
+        void accept(String key, String token, boolean quoted) throws IOException;
+    }
+
+    @FunctionalInterface
+    private interface ArrayHandler {
+        void accept(String key, List<String> elements) throws IOException;
+    }
+
+    /**
+     * The fields of a class that are mapped to the members of an object
+     */
+    private static final class Mapping {
+        private final Map<String, Member> members = new LinkedHashMap<>();
+        private final MethodHandle constructor;
+
+        private Mapping(Class<?> type) {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            for (Class<?> clazz = type; clazz != null && clazz != Object.class; clazz = clazz.getSuperclass()) {
+                for (Field field : clazz.getDeclaredFields()) {
+                    int modifiers = field.getModifiers();
+                    if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers) || field.isSynthetic()
+                            || members.containsKey(field.getName()))
+                        continue;
+                    field.setAccessible(true);
+                    PropertyConverter<?> converter;
+                    Function<List<String>, ?> elements;
+                    try {
+                        converter = PropertyConverters.getConverter(field.getGenericType());
+                        elements = PropertyConverters.getElementsConverter(field.getGenericType());
+                    } catch (IllegalArgumentException e) {
+                        continue;
+                    }
+                    try {
+                        MethodHandle setter = Modifier.isFinal(modifiers) ? null : lookup.unreflectSetter(field).asType(SETTER_TYPE);
+                        members.put(field.getName(), new Member(field.getName(), converter, elements, setter,
+                                lookup.unreflectGetter(field).asType(GETTER_TYPE), field.getType().isPrimitive()));
+                    } catch (IllegalAccessException e) {
+                        throw new RuntimeException("Can not map field " + field.getName() + " of " + type.getName(), e);
+                    }
+                }
+            }
+
+            MethodHandle constructor;
+            try {
+                Constructor<?> declared = type.getDeclaredConstructor();
+                declared.setAccessible(true);
+                constructor = lookup.unreflectConstructor(declared).asType(MethodType.methodType(Object.class));
+            } catch (NoSuchMethodException | IllegalAccessException e) {
+                constructor = null;
+            }
+            this.constructor = constructor;
+        }
+
+        private <T> T newInstance(Class<T> type) throws IOException {
+            if (constructor == null)
+                throw new IOException("Can not decode " + type.getName() + " without a no-args constructor");
+            try {
+                return type.cast((Object) constructor.invokeExact());
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new RuntimeException("Failed to instantiate " + type.getName(), t);
+            }
+        }
+    }
+
+    private static final class Member {
+        private final String name;
+        private final PropertyConverter<?> converter;
+        private final Function<List<String>, ?> elements;
+        private final MethodHandle setter;
+        private final MethodHandle getter;
+        private final boolean primitive;
+
+        private Member(String name, PropertyConverter<?> converter, Function<List<String>, ?> elements, MethodHandle setter,
+                       MethodHandle getter, boolean primitive) {
+            this.name = name;
+            this.converter = converter;
+            this.elements = elements;
+            this.setter = setter;
+            this.getter = getter;
+            this.primitive = primitive;
+        }
+
+        private void set(Object instance, String token, boolean quoted) throws IOException {
+            if (setter == null)
+                return;
+            if (!quoted && token.equals("null")) {
+                if (primitive)
+                    return;
+                invoke(instance, null);
+                return;
+            }
+            Object value;
+            try {
+                value = converter.convert(token);
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Invalid value for " + name + ": " + token, e);
+            }
+            invoke(instance, value);
+        }
+
+        private void setElements(Object instance, List<String> values) throws IOException {
+            if (setter == null || elements == null)
+                return;
+            Object value;
+            try {
+                value = elements.apply(values);
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Invalid value for " + name + ": " + values, e);
+            }
+            invoke(instance, value);
+        }
+
+        private void invoke(Object instance, Object value) {
+            try {
+                setter.invokeExact(instance, value);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new RuntimeException(t);
+            }
+        }
+
+        private Object get(Object instance) {
+            try {
+                return (Object) getter.invokeExact(instance);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new RuntimeException(t);
+            }
+        }
+    }
+
+    /**
+     * A minimal pull parser reading a single flat object from a reader
+     */
+    private static final class Parser {
+        private final Reader reader;
+        private final char[] buffer = new char[4096];
+        private final StringBuilder token = new StringBuilder();
+        private int position;
+        private int limit;
+
+        private Parser(Reader reader) {
+            this.reader = reader;
+        }
+
+        private void readObject(MemberHandler handler, ArrayHandler arrays) throws IOException {
+            expect('{');
+            int c = skipWhitespace();
+            if (c == '}')
+                return;
+            while (true) {
+                if (c != '"')
+                    throw error("Expected a member name");
+                String key = readString();
+                expect(':');
+                c = skipWhitespace();
+                if (c == '"') {
+                    handler.accept(key, readString(), true);
+                } else if (c == '[' && arrays != null) {
+                    List<String> elements = readArray();
+                    if (elements != null)
+                        arrays.accept(key, elements);
+                } else if (c == '{' || c == '[') {
+                    skipNested();
+                } else {
+                    handler.accept(key, readLiteral(c), false);
+                }
+                c = skipWhitespace();
+                if (c == '}')
+                    return;
+                if (c != ',')
+                    throw error("Expected ',' or '}'");
+                c = skipWhitespace();
+            }
+        }
+
+        /**
+         * Reads the elements of a flat array, a {@code null} literal is read as {@code null}.
+         * An array with nested objects or arrays is skipped and {@code null} is returned.
+         */
+        private List<String> readArray() throws IOException {
+            List<String> elements = new ArrayList<>();
+            int c = skipWhitespace();
+            if (c == ']')
+                return elements;
+            while (true) {
+                if (c == '"') {
+                    elements.add(readString());
+                } else if (c == '{' || c == '[') {
+                    skipNested();
+                    skipNested();
+                    return null;
+                } else {
+                    String literal = readLiteral(c);
+                    elements.add(literal.equals("null") ? null : literal);
+                }
+                c = skipWhitespace();
+                if (c == ']')
+                    return elements;
+                if (c != ',')
+                    throw error("Expected ',' or ']'");
+                c = skipWhitespace();
+            }
+        }
+
+        private String readString() throws IOException {
+            token.setLength(0);
+            while (true) {
+                int c = read();
+                if (c == '"')
+                    return token.toString();
+                if (c == '\\') {
+                    c = read();
+                    switch (c) {
+                        case 'b':
+                            token.append('\b');
+                            break;
+                        case 'f':
+                            token.append('\f');
+                            break;
+                        case 'n':
+                            token.append('\n');
+                            break;
+                        case 'r':
+                            token.append('\r');
+                            break;
+                        case 't':
+                            token.append('\t');
+                            break;
+                        case 'u':
+                            int code = 0;
+                            for (int i = 0; i < 4; i++) {
+                                int digit = Character.digit(read(), 16);
+                                if (digit < 0)
+                                    throw error("Invalid unicode escape");
+                                code = code << 4 | digit;
+                            }
+                            token.append((char) code);
+                            break;
+                        default:
+                            token.append((char) c);
+                    }
+                } else {
+                    token.append((char) c);
+                }
+            }
+        }
+
+        private String readLiteral(int first) throws IOException {
+            token.setLength(0);
+            int c = first;
+            while (c == '-' || c == '+' || c == '.' || Character.isLetterOrDigit(c)) {
+                token.append((char) c);
+                c = peek();
+                if (c == -1)
+                    break;
+                position++;
+            }
+            if (token.length() == 0)
+                throw error("Unexpected character '" + (char) c + "'");
+            if (c != -1)
+                position--;
+            return token.toString();
+        }
+
+        private void skipNested() throws IOException {
+            int depth = 1;
+            while (depth > 0) {
+                int c = read();
+                if (c == '"')
+                    readString();
+                else if (c == '{' || c == '[')
+                    depth++;
+                else if (c == '}' || c == ']')
+                    depth--;
+            }
+        }
+
+        private void expect(char expected) throws IOException {
+            if (skipWhitespace() != expected)
+                throw error("Expected '" + expected + "'");
+        }
+
+        private int skipWhitespace() throws IOException {
+            int c;
+            do {
+                c = read();
+            } while (c == ' ' || c == '\n' || c == '\r' || c == '\t');
+            return c;
+        }
+
+        private int read() throws IOException {
+            int c = peek();
+            if (c == -1)
+                throw error("Unexpected end of input");
+            position++;
+            return c;
+        }
+
+        private int peek() throws IOException {
+            if (position == limit) {
+                limit = reader.read(buffer);
+                position = 0;
+                if (limit <= 0) {
+                    limit = 0;
+                    return -1;
+                }
+            }
+            return buffer[position];
+        }
+
+        private IOException error(String message) {
+            return new IOException("Malformed JSON: " + message);
+        }
+    }
+}
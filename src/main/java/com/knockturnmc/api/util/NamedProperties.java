@@ -26,9 +26,6 @@ package com.knockturnmc.api.util;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
-import java.lang.reflect.Field;
-import java.lang.reflect.Type;
-import java.util.Objects;
 import java.util.Properties;
 
 /**
@@ -49,12 +46,19 @@ import java.util.Properties;
  *     {@literal @Property(value = "time.unit", type = TimeUnit.class)}
  *      public TimeUnit timeUnit;
  * }</code></pre>
+ * The supported field types and how they are parsed are described in {@link PropertyConverters}.
  * If a mapping was not found in the file, it will be created with the default value.
  * If no default value is present, it will be instatianted will the type's default value,
  * for primitives this is {@code 0} or {@code false} and for objects this will be {@code null}
+ * <p>
+ * After the mapping was applied, an immutable {@link PropertiesSnapshot} of all entries is published,
+ * which can be read from any thread without synchronization.
  */
 public abstract class NamedProperties extends Properties {
 
+    private transient volatile PropertiesSnapshot snapshot;
+    private transient boolean defaultsAdded;
+
     @Override
     public synchronized void load(InputStream inStream) throws IOException {
         super.load(inStream);
@@ -73,65 +77,50 @@ public abstract class NamedProperties extends Properties {
         map();
     }
 
-    private void prepareMapping(Class clazz, NamedProperties instance) throws IllegalAccessException {
-        for (Field field : clazz.getDeclaredFields()) {
-            if (!field.isAnnotationPresent(Property.class))
-                continue;
-            Type type = field.getGenericType();
-            Property property = field.getAnnotation(Property.class);
-            field.setAccessible(true);
-            String name = type.getTypeName();
-
-            String val = getString(property.value());
-            if (val == null) {
-                val = property.defaultvalue();
-                setProperty(property.value(), val);
-            }
-
-            if (property.type() != Void.class) {
-                field.set(instance, Objects.equals(val, "") ? null : Enum.valueOf(property.type(), val));
-            } else {
-                switch (name) {
-                    case "int":
-                        int value;
-                        try {
-                            value = Integer.parseInt(Objects.equals(val, "") ? "0" : val);
-                        } catch (NumberFormatException e) {
-                            throw new RuntimeException("Invalid integer for field " + property.value() + "=" + val);
-                        }
-                        field.setInt(instance, value);
-                        break;
-                    case "long":
-                        long longValue;
-                        try {
-                            longValue = Long.parseLong(Objects.equals(val, "") ? "0" : val);
-                        } catch (NumberFormatException e) {
-                            throw new RuntimeException("Invalid long for field " + property.value() + "=" + val);
-                        }
-                        field.setLong(instance, longValue);
-                        break;
-                    case "java.lang.String":
-                        field.set(instance, val);
-                        break;
-                    case "boolean":
-                        field.setBoolean(instance, Boolean.parseBoolean(val));
-                        break;
-                    default:
-                        throw new RuntimeException("Unsupported property type: " + name);
-                }
-            }
-        }
+    private void prepareMapping(Class clazz, NamedProperties instance) {
+        PropertyBinder.of(clazz).bind(instance);
     }
 
     private void map() {
+        int size = size();
         try {
             prepareMapping(getClass(), this);
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
+        defaultsAdded = size() != size;
+        publishSnapshot();
+    }
+
+    /**
+     * Publishes a new snapshot of the current entries
+     */
+    void publishSnapshot() {
+        snapshot = PropertiesSnapshot.of(this);
+    }
+
+    /**
+     * Checks if the last load added missing keys with their default values
+     *
+     * @return true if defaults were added
+     */
+    boolean hasAddedDefaults() {
+        return defaultsAdded;
+    }
+
+    /**
+     * Gets an immutable snapshot of the entries as they were after the last load.
+     * Reading from the snapshot never blocks, changes made with {@link #setProperty} after loading are not included.
+     * If nothing was loaded yet, a snapshot of the current entries is returned.
+     *
+     * @return the snapshot
+     */
+    public PropertiesSnapshot getSnapshot() {
+        PropertiesSnapshot snapshot = this.snapshot;
+        return snapshot != null ? snapshot : PropertiesSnapshot.of(this);
     }
 
-    private String getString(String key) {
+    String getString(String key) {
         return (String) get(key);
     }
 }
@@ -0,0 +1,48 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2016 Sven Olderaan, http://knockturnmc.com/
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE
+ */
+
+package com.knockturnmc.api.util;
+
+/**
+ * Applies the {@link Property} mapping of a {@link NamedProperties} class to an instance.
+ * Implementations are generated at compile time by the
+ * {@link com.knockturnmc.api.util.processor.NamedPropertiesProcessor} and are picked up automatically if present,
+ * otherwise the mapping falls back to reflection.
+ *
+ * @param <T> the type of the mapped class
+ */
+public interface NamedPropertiesBinder<T extends NamedProperties> {
+
+    /**
+     * The suffix that is appended to the binary name of a mapped class to get the name of its generated binder
+     */
+    String SUFFIX = "$$PropertyBinder";
+
+    /**
+     * Applies the mapping to the given instance.
+     * Missing keys will be added to the instance with their default value.
+     *
+     * @param instance the instance to bind
+     */
+    void bind(T instance);
+}
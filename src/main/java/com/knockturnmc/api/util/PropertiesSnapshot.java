@@ -0,0 +1,164 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2016 Sven Olderaan, http://knockturnmc.com/
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE
+ */
+
+package com.knockturnmc.api.util;
+
+import java.util.Map;
+import java.util.Properties;
+import java.util.function.BiConsumer;
+
+/**
+ * An immutable copy of the entries of a {@link Properties} object.
+ * Unlike {@link Properties}, which is a synchronized {@link java.util.Hashtable}, reads never take a lock.
+ * The entries are stored in a compact open-addressed table with linear probing.
+ *
+ * @see NamedProperties#getSnapshot()
+ */
+public final class PropertiesSnapshot {
+
+    private static final PropertiesSnapshot EMPTY = new PropertiesSnapshot(new String[0], new String[0]);
+
+    private final String[] keys;
+    private final String[] values;
+    private final int mask;
+    private final int size;
+
+    private PropertiesSnapshot(String[] keys, String[] values) {
+        this.size = keys.length;
+        int capacity = 2;
+        while (capacity < size * 2) {
+            capacity <<= 1;
+        }
+        this.keys = new String[capacity];
+        this.values = new String[capacity];
+        this.mask = capacity - 1;
+
+        for (int i = 0; i < keys.length; i++) {
+            int index = hash(keys[i]) & mask;
+            while (this.keys[index] != null) {
+                index = (index + 1) & mask;
+            }
+            this.keys[index] = keys[i];
+            this.values[index] = values[i];
+        }
+    }
+
+    /**
+     * Creates a snapshot of all string entries of the given properties.
+     * Default properties are not included.
+     *
+     * @param properties the properties to copy
+     * @return the snapshot
+     */
+    public static PropertiesSnapshot of(Properties properties) {
+        String[] keys;
+        String[] values;
+        int size = 0;
+        synchronized (properties) {
+            keys = new String[properties.size()];
+            values = new String[keys.length];
+            for (Map.Entry<Object, Object> entry : properties.entrySet()) {
+                if (entry.getKey() instanceof String && entry.getValue() instanceof String) {
+                    keys[size] = (String) entry.getKey();
+                    values[size++] = (String) entry.getValue();
+                }
+            }
+        }
+        if (size == 0)
+            return EMPTY;
+        if (size != keys.length) {
+            String[] trimmedKeys = new String[size];
+            String[] trimmedValues = new String[size];
+            System.arraycopy(keys, 0, trimmedKeys, 0, size);
+            System.arraycopy(values, 0, trimmedValues, 0, size);
+            keys = trimmedKeys;
+            values = trimmedValues;
+        }
+        return new PropertiesSnapshot(keys, values);
+    }
+
+    /**
+     * Gets the value of a key
+     *
+     * @param key the key
+     * @return the value or {@code null} if the key is not present
+     */
+    public String getProperty(String key) {
+        int index = hash(key) & mask;
+        String current;
+        while ((current = keys[index]) != null) {
+            if (current.equals(key))
+                return values[index];
+            index = (index + 1) & mask;
+        }
+        return null;
+    }
+
+    /**
+     * Gets the value of a key
+     *
+     * @param key          the key
+     * @param defaultValue the value to return if the key is not present
+     * @return the value or the default value if the key is not present
+     */
+    public String getProperty(String key, String defaultValue) {
+        String value = getProperty(key);
+        return value == null ? defaultValue : value;
+    }
+
+    /**
+     * Checks if a key is present
+     *
+     * @param key the key
+     * @return true if the key is present
+     */
+    public boolean containsKey(String key) {
+        return getProperty(key) != null;
+    }
+
+    /**
+     * Gets the amount of entries
+     *
+     * @return the amount of entries
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Performs the given action for every entry
+     *
+     * @param action the action
+     */
+    public void forEach(BiConsumer<String, String> action) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != null)
+                action.accept(keys[i], values[i]);
+        }
+    }
+
+    private static int hash(String key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+}
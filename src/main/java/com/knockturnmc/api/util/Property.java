@@ -47,7 +47,8 @@ public @interface Property {
     String defaultvalue() default "";
 
     /**
-     * A mapped type that can be used for parsing the value. Note: this has to be an enum!
+     * A mapped type that can be used for parsing the value instead of the type of the field,
+     * usually an enum. The type has to be supported by {@link PropertyConverters}.
      * @return the mapped type
      */
     Class type() default Void.class;
@@ -0,0 +1,327 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2016 Sven Olderaan, http://knockturnmc.com/
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE
+ */
+
+package com.knockturnmc.api.util;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A compiled binding plan for a {@link NamedProperties} class.
+ * The declared fields, their converters and setters are resolved once per class and cached,
+ * so subsequent loads only have to run the plan.
+ */
+final class PropertyBinder implements NamedPropertiesBinder<NamedProperties> {
+
+    private static final ClassValue<PropertyBinder> PLANS = new ClassValue<PropertyBinder>() {
+        @Override
+        protected PropertyBinder computeValue(Class<?> type) {
+            return new PropertyBinder(type);
+        }
+    };
+
+    private static final ClassValue<NamedPropertiesBinder> BINDERS = new ClassValue<NamedPropertiesBinder>() {
+        @Override
+        protected NamedPropertiesBinder computeValue(Class<?> type) {
+            NamedPropertiesBinder generated = getGenerated(type);
+            return generated != null ? generated : PLANS.get(type);
+        }
+    };
+
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, NamedProperties.class, Object.class);
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, NamedProperties.class);
+    private static final MethodHandle FIELD_SET;
+
+    static {
+        try {
+            FIELD_SET = MethodHandles.lookup().findVirtual(Field.class, "set", MethodType.methodType(void.class, Object.class, Object.class));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final Binding[] bindings;
+    private final long schemaHash;
+
+    private PropertyBinder(Class<?> clazz) {
+        List<Binding> bindings = new ArrayList<>();
+        StringBuilder schema = new StringBuilder(clazz.getName());
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        for (Field field : clazz.getDeclaredFields()) {
+            if (!field.isAnnotationPresent(Property.class))
+                continue;
+            Property property = field.getAnnotation(Property.class);
+            field.setAccessible(true);
+            MethodHandle setter;
+            MethodHandle getter;
+            try {
+                setter = getSetter(lookup, field).asType(SETTER_TYPE);
+                getter = getGetter(lookup, field).asType(GETTER_TYPE);
+            } catch (IllegalAccessException e) {
+                throw new RuntimeException("Can not bind field " + field.getName() + " of " + clazz.getName(), e);
+            }
+            Class<?> enumType = property.type() != Void.class ? property.type() : field.getType();
+            bindings.add(new Binding(property.value(), property.defaultvalue(), getConverter(field, property), setter, getter,
+                    enumType.isEnum() ? enumType : null));
+            appendSchema(schema, field, property);
+        }
+        this.bindings = bindings.toArray(new Binding[bindings.size()]);
+        this.schemaHash = hash(schema);
+    }
+
+    private static MethodHandle getSetter(MethodHandles.Lookup lookup, Field field) throws IllegalAccessException {
+        int modifiers = field.getModifiers();
+        if (Modifier.isStatic(modifiers)) {
+            if (Modifier.isFinal(modifiers))
+                throw new IllegalArgumentException("Can not bind static final field " + field.getName() + " of " + field.getDeclaringClass().getName());
+            return MethodHandles.dropArguments(lookup.unreflectSetter(field), 0, Object.class);
+        }
+        try {
+            return lookup.unreflectSetter(field);
+        } catch (IllegalAccessException e) {
+            if (!Modifier.isFinal(modifiers))
+                throw e;
+            // not every runtime lets method handles write final fields, reflection can once the field is accessible
+            return FIELD_SET.bindTo(field);
+        }
+    }
+
+    private static MethodHandle getGetter(MethodHandles.Lookup lookup, Field field) throws IllegalAccessException {
+        MethodHandle getter = lookup.unreflectGetter(field);
+        return Modifier.isStatic(field.getModifiers()) ? MethodHandles.dropArguments(getter, 0, Object.class) : getter;
+    }
+
+    /**
+     * Gets the binder for the given class.
+     * If a binder was generated at compile time it will be used, otherwise the reflective plan is compiled.
+     *
+     * @param clazz the mapped class
+     * @return the binder
+     */
+    @SuppressWarnings("unchecked")
+    static NamedPropertiesBinder<NamedProperties> of(Class<?> clazz) {
+        return BINDERS.get(clazz);
+    }
+
+    /**
+     * Gets the reflective binding plan for the given class, compiling it on first use
+     *
+     * @param clazz the mapped class
+     * @return the binding plan
+     */
+    static PropertyBinder reflective(Class<?> clazz) {
+        return PLANS.get(clazz);
+    }
+
+    @Override
+    public void bind(NamedProperties instance) {
+        for (Binding binding : bindings) {
+            binding.bind(instance);
+        }
+    }
+
+    /**
+     * Gets the amount of mapped fields
+     *
+     * @return the amount of fields
+     */
+    int size() {
+        return bindings.length;
+    }
+
+    /**
+     * Gets the key of a mapped field
+     *
+     * @param index the index of the field
+     * @return the key
+     */
+    String getKey(int index) {
+        return bindings[index].key;
+    }
+
+    /**
+     * Gets the enum type of a mapped field
+     *
+     * @param index the index of the field
+     * @return the enum type or {@code null} if the field is not mapped to an enum
+     */
+    Class<?> getEnumType(int index) {
+        return bindings[index].enumType;
+    }
+
+    /**
+     * Converts a raw value like it would be converted for the given field
+     *
+     * @param index the index of the field
+     * @param val   the raw value
+     * @return the converted value
+     */
+    Object convert(int index, String val) {
+        Binding binding = bindings[index];
+        return binding.converter.convert(binding.key, val);
+    }
+
+    /**
+     * Gets the current value of a mapped field
+     *
+     * @param index    the index of the field
+     * @param instance the instance to read from
+     * @return the value, primitives are boxed
+     */
+    Object get(int index, NamedProperties instance) {
+        try {
+            return (Object) bindings[index].getter.invokeExact(instance);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new RuntimeException(t);
+        }
+    }
+
+    /**
+     * Sets a mapped field without converting or touching the entries of the instance
+     *
+     * @param index    the index of the field
+     * @param instance the instance to write to
+     * @param value    the value, primitives have to be boxed
+     */
+    void set(int index, NamedProperties instance, Object value) {
+        bindings[index].set(instance, value);
+    }
+
+    /**
+     * Gets a hash of the mapped keys, default values and field types.
+     * The hash changes if the mapping of the class changes.
+     *
+     * @return the schema hash
+     */
+    long getSchemaHash() {
+        return schemaHash;
+    }
+
+    private static void appendSchema(StringBuilder schema, Field field, Property property) {
+        schema.append('\0').append(property.value())
+                .append('\0').append(property.defaultvalue())
+                .append('\0').append(field.getGenericType().getTypeName());
+        Class<?> enumType = property.type() != Void.class ? property.type() : field.getType();
+        if (enumType.isEnum()) {
+            schema.append('\0').append(enumType.getName());
+            for (Object constant : enumType.getEnumConstants()) {
+                schema.append(',').append(((Enum) constant).name());
+            }
+        }
+    }
+
+    private static long hash(CharSequence sequence) {
+        // 64 bit FNV-1a
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < sequence.length(); i++) {
+            hash ^= sequence.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private static NamedPropertiesBinder getGenerated(Class<?> clazz) {
+        Class<?> generated;
+        try {
+            generated = Class.forName(clazz.getName() + SUFFIX, true, clazz.getClassLoader());
+        } catch (ClassNotFoundException e) {
+            return null;
+        }
+        if (!NamedPropertiesBinder.class.isAssignableFrom(generated))
+            return null;
+        try {
+            return (NamedPropertiesBinder) generated.getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new RuntimeException("Failed to instantiate generated binder " + generated.getName(), e);
+        }
+    }
+
+    private static Converter getConverter(Field field, Property property) {
+        Type type = property.type() != Void.class ? property.type() : field.getGenericType();
+        PropertyConverter<?> converter;
+        try {
+            converter = PropertyConverters.getConverter(type);
+        } catch (IllegalArgumentException e) {
+            throw new RuntimeException("Unsupported property type: " + field.getGenericType().getTypeName());
+        }
+        String description = PropertyConverters.describe(type);
+        return (key, val) -> {
+            try {
+                return converter.convert(val);
+            } catch (IllegalArgumentException e) {
+                throw new RuntimeException("Invalid " + description + " for field " + key + "=" + val, e);
+            }
+        };
+    }
+
+    @FunctionalInterface
+    private interface Converter {
+        Object convert(String key, String val);
+    }
+
+    private static final class Binding {
+        private final String key;
+        private final String defaultvalue;
+        private final Converter converter;
+        private final MethodHandle setter;
+        private final MethodHandle getter;
+        private final Class<?> enumType;
+
+        private Binding(String key, String defaultvalue, Converter converter, MethodHandle setter, MethodHandle getter, Class<?> enumType) {
+            this.key = key;
+            this.defaultvalue = defaultvalue;
+            this.converter = converter;
+            this.setter = setter;
+            this.getter = getter;
+            this.enumType = enumType;
+        }
+
+        private void bind(NamedProperties instance) {
+            String val = instance.getString(key);
+            if (val == null) {
+                val = defaultvalue;
+                instance.setProperty(key, val);
+            }
+
+            set(instance, converter.convert(key, val));
+        }
+
+        private void set(NamedProperties instance, Object value) {
+            try {
+                setter.invokeExact(instance, value);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new RuntimeException(t);
+            }
+        }
+    }
+}
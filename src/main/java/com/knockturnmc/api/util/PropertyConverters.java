@@ -0,0 +1,240 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2016 Sven Olderaan, http://knockturnmc.com/
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE
+ */
+
+package com.knockturnmc.api.util;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.WildcardType;
+import java.time.Duration;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The registry of {@link PropertyConverter}s used to map {@link Property} fields.
+ * Converters are resolved once per field when the mapping of a class is compiled,
+ * so values are only converted when a configuration is loaded.
+ * <p>
+ * Built in are converters for all primitives and their boxed types, {@link String}, enums,
+ * {@link Duration}, {@link UUID}, arrays and comma separated {@link List}s, {@link Set}s or {@link Collection}s
+ * of any supported type. An empty value is converted to {@code 0} or {@code false} for primitives,
+ * to an empty array or collection and to {@code null} for any other type.
+ * <p>
+ * Custom converters should be registered before the first configuration using them is loaded.
+ */
+public final class PropertyConverters {
+
+    private static final Pattern DURATION_PATTERN = Pattern.compile("(-?\\d+)\\s*(ms|s|m|h|d)?", Pattern.CASE_INSENSITIVE);
+    private static final Pattern SEPARATOR = Pattern.compile("\\s*,\\s*");
+
+    private static final Map<Class<?>, PropertyConverter<?>> converters = new ConcurrentHashMap<>();
+
+    static {
+        converters.put(String.class, value -> value);
+        converters.put(int.class, value -> value.isEmpty() ? 0 : Integer.parseInt(value));
+        converters.put(long.class, value -> value.isEmpty() ? 0L : Long.parseLong(value));
+        converters.put(short.class, value -> value.isEmpty() ? (short) 0 : Short.parseShort(value));
+        converters.put(byte.class, value -> value.isEmpty() ? (byte) 0 : Byte.parseByte(value));
+        converters.put(double.class, value -> value.isEmpty() ? 0D : Double.parseDouble(value));
+        converters.put(float.class, value -> value.isEmpty() ? 0F : Float.parseFloat(value));
+        converters.put(boolean.class, Boolean::parseBoolean);
+        converters.put(char.class, value -> value.isEmpty() ? '\0' : parseCharacter(value));
+        converters.put(Integer.class, nullable(Integer::valueOf));
+        converters.put(Long.class, nullable(Long::valueOf));
+        converters.put(Short.class, nullable(Short::valueOf));
+        converters.put(Byte.class, nullable(Byte::valueOf));
+        converters.put(Double.class, nullable(Double::valueOf));
+        converters.put(Float.class, nullable(Float::valueOf));
+        converters.put(Boolean.class, nullable(Boolean::valueOf));
+        converters.put(Character.class, nullable(PropertyConverters::parseCharacter));
+        converters.put(Duration.class, nullable(PropertyConverters::parseDuration));
+        converters.put(UUID.class, nullable(Utils::formatUUID));
+    }
+
+    private PropertyConverters() {
+    }
+
+    /**
+     * Registers a converter for a type. Primitives and {@link String} can not be replaced.
+     *
+     * @param type      the type
+     * @param converter the converter
+     * @param <T>       the type
+     */
+    public static <T> void register(Class<T> type, PropertyConverter<? extends T> converter) {
+        if (type == null || converter == null)
+            throw new IllegalArgumentException("type and converter can not be null");
+        if (type.isPrimitive() || type == String.class)
+            throw new IllegalArgumentException("The converter for " + type.getName() + " can not be replaced");
+        converters.put(type, converter);
+    }
+
+    /**
+     * Gets the converter for a type
+     *
+     * @param type the type, either a class or a parameterized collection type
+     * @return the converter
+     * @throws IllegalArgumentException if the type is not supported
+     */
+    @SuppressWarnings("unchecked")
+    public static PropertyConverter<?> getConverter(Type type) {
+        if (type instanceof Class) {
+            Class<?> clazz = (Class<?>) type;
+            PropertyConverter<?> converter = converters.get(clazz);
+            if (converter != null)
+                return converter;
+            if (clazz.isEnum()) {
+                Class<? extends Enum> enumType = (Class<? extends Enum>) clazz;
+                return nullable(value -> Enum.valueOf(enumType, value));
+            }
+        }
+        Function<List<String>, ?> elements = getElementsConverter(type);
+        if (elements != null)
+            return value -> elements.apply(split(value));
+        throw new IllegalArgumentException("Unsupported property type: " + type.getTypeName());
+    }
+
+    /**
+     * Gets the converter of an array or collection type from values that are already separated,
+     * each value is converted by the converter of the element type and {@code null} values are kept.
+     *
+     * @param type the type
+     * @return the converter or {@code null} if the type is not an array or collection
+     * @throws IllegalArgumentException if the element type is not supported
+     */
+    static Function<List<String>, ?> getElementsConverter(Type type) {
+        if (type instanceof Class && ((Class<?>) type).isArray()) {
+            Class<?> component = ((Class<?>) type).getComponentType();
+            PropertyConverter<?> element = getConverter(component);
+            return values -> {
+                Object array = Array.newInstance(component, values.size());
+                for (int i = 0; i < values.size(); i++) {
+                    Array.set(array, i, convert(element, values.get(i)));
+                }
+                return array;
+            };
+        }
+        if (type instanceof ParameterizedType) {
+            ParameterizedType parameterized = (ParameterizedType) type;
+            Type raw = parameterized.getRawType();
+            if (raw == List.class || raw == Collection.class || raw == Iterable.class) {
+                PropertyConverter<?> element = getConverter(getUpperBound(parameterized.getActualTypeArguments()[0]));
+                return values -> Collections.unmodifiableList(convert(element, values, new ArrayList<>()));
+            }
+            if (raw == Set.class) {
+                PropertyConverter<?> element = getConverter(getUpperBound(parameterized.getActualTypeArguments()[0]));
+                return values -> Collections.unmodifiableSet(convert(element, values, new LinkedHashSet<>()));
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Gets a short description of a type for error messages
+     *
+     * @param type the type
+     * @return the description
+     */
+    static String describe(Type type) {
+        if (type == int.class || type == Integer.class)
+            return "integer";
+        if (type instanceof Class) {
+            Class<?> clazz = (Class<?>) type;
+            return clazz.isPrimitive() ? clazz.getName() : clazz.getSimpleName();
+        }
+        return type.getTypeName();
+    }
+
+    private static <T> PropertyConverter<T> nullable(PropertyConverter<T> converter) {
+        return value -> value.isEmpty() ? null : converter.convert(value);
+    }
+
+    private static List<String> split(String value) {
+        String trimmed = value.trim();
+        if (trimmed.isEmpty())
+            return Collections.emptyList();
+        return Arrays.asList(SEPARATOR.split(trimmed, -1));
+    }
+
+    private static <C extends Collection<Object>> C convert(PropertyConverter<?> element, List<String> values, C collection) {
+        for (String value : values) {
+            collection.add(convert(element, value));
+        }
+        return collection;
+    }
+
+    private static Object convert(PropertyConverter<?> element, String value) {
+        return value == null ? null : element.convert(value);
+    }
+
+    private static Type getUpperBound(Type type) {
+        if (type instanceof WildcardType)
+            return ((WildcardType) type).getUpperBounds()[0];
+        return type;
+    }
+
+    private static char parseCharacter(String value) {
+        Character character = Utils.evaluateCharacter(value);
+        if (character == null)
+            throw new IllegalArgumentException("Not a single character: " + value);
+        return character;
+    }
+
+    /**
+     * Parses a duration, either in ISO-8601 format like {@code PT5M}
+     * or as an amount with an optional unit ({@code ms}, {@code s}, {@code m}, {@code h} or {@code d}) like {@code 30s}.
+     * An amount without unit is interpreted as milliseconds.
+     */
+    private static Duration parseDuration(String value) {
+        String trimmed = value.trim();
+        if (trimmed.startsWith("P") || trimmed.startsWith("p") || trimmed.startsWith("-P") || trimmed.startsWith("-p")) {
+            try {
+                return Duration.parse(trimmed);
+            } catch (DateTimeParseException e) {
+                throw new IllegalArgumentException("Invalid duration: " + value, e);
+            }
+        }
+        Matcher matcher = DURATION_PATTERN.matcher(trimmed);
+        if (!matcher.matches())
+            throw new IllegalArgumentException("Invalid duration: " + value);
+        long amount = Long.parseLong(matcher.group(1));
+        String unit = matcher.group(2) == null ? "ms" : matcher.group(2).toLowerCase(Locale.ROOT);
+        switch (unit) {
+            case "s":
+                return Duration.ofSeconds(amount);
+            case "m":
+                return Duration.ofMinutes(amount);
+            case "h":
+                return Duration.ofHours(amount);
+            case "d":
+                return Duration.ofDays(amount);
+            default:
+                return Duration.ofMillis(amount);
+        }
+    }
+}
@@ -0,0 +1,264 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2016 Sven Olderaan, http://knockturnmc.com/
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE
+ */
+
+package com.knockturnmc.api.util;
+
+import java.net.HttpURLConnection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A response cache for the GET requests of a {@link RestClient}.
+ * Responses are kept as long as {@code Cache-Control: max-age} or {@code Expires} allows,
+ * afterwards they are revalidated with {@code If-None-Match} or {@code If-Modified-Since}
+ * and served from the cache if the server responds with {@code 304 Not Modified}.
+ * Responses with {@code Cache-Control: no-store} or without any freshness or validator are not cached.
+ * <p>
+ * The cache is bounded by the total size of the cached bodies, the least recently used responses are evicted first.
+ * Responses are cached per content type and request headers, so a cache can be shared by different clients.
+ *
+ * @see RestClient#setCache(RestCache)
+ */
+public class RestCache {
+
+    private final long maxBytes;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75F, true);
+    private long size;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder revalidations = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Creates a new cache
+     *
+     * @param maxBytes the maximum total size of the cached bodies
+     */
+    public RestCache(long maxBytes) {
+        if (maxBytes < 1)
+            throw new IllegalArgumentException("maxBytes must be positive");
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Gets the amount of requests that were served from the cache without contacting the server
+     *
+     * @return the amount of hits
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Gets the amount of requests that had to fetch a full response
+     *
+     * @return the amount of misses
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Gets the amount of requests that were served from the cache after the server confirmed they are unchanged
+     *
+     * @return the amount of revalidations
+     */
+    public long getRevalidations() {
+        return revalidations.sum();
+    }
+
+    /**
+     * Gets the amount of responses that were evicted to stay within the size limit
+     *
+     * @return the amount of evictions
+     */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * Gets the total size of the cached bodies
+     *
+     * @return the size in bytes
+     */
+    public synchronized long getSize() {
+        return size;
+    }
+
+    /**
+     * Removes all cached responses
+     */
+    public synchronized void clear() {
+        entries.clear();
+        size = 0;
+    }
+
+    synchronized Entry get(String key) {
+        return entries.get(key);
+    }
+
+    synchronized void put(String key, Entry entry) {
+        Entry previous = entries.remove(key);
+        if (previous != null)
+            size -= previous.body.length;
+        if (entry.body.length > maxBytes)
+            return;
+
+        entries.put(key, entry);
+        size += entry.body.length;
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (size > maxBytes && iterator.hasNext()) {
+            size -= iterator.next().body.length;
+            iterator.remove();
+            evictions.increment();
+        }
+    }
+
+    synchronized void remove(String key) {
+        Entry previous = entries.remove(key);
+        if (previous != null)
+            size -= previous.body.length;
+    }
+
+    void hit() {
+        hits.increment();
+    }
+
+    void miss() {
+        misses.increment();
+    }
+
+    void revalidated() {
+        revalidations.increment();
+    }
+
+    /**
+     * A cached response
+     */
+    static final class Entry {
+        final byte[] body;
+        final String contentType;
+        final String etag;
+        final String lastModified;
+        final long expires;
+
+        private Entry(byte[] body, String contentType, String etag, String lastModified, long expires) {
+            this.body = body;
+            this.contentType = contentType;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.expires = expires;
+        }
+
+        /**
+         * Creates an entry from a response
+         *
+         * @param connection the connection of the response
+         * @param body       the body of the response
+         * @param now        the time the request was sent
+         * @return the entry or {@code null} if the response can not be cached
+         */
+        static Entry of(HttpURLConnection connection, byte[] body, long now) {
+            String cacheControl = connection.getHeaderField("Cache-Control");
+            if (getDirective(cacheControl, "no-store") != null)
+                return null;
+            String etag = connection.getHeaderField("ETag");
+            String lastModified = connection.getHeaderField("Last-Modified");
+            long expires = getExpires(connection, now);
+            if (expires <= now && etag == null && lastModified == null)
+                return null;
+            return new Entry(body, connection.getContentType(), etag, lastModified, expires);
+        }
+
+        /**
+         * Creates an uncacheable entry
+         *
+         * @param body        the body of the response
+         * @param contentType the content type of the response
+         * @return the entry
+         */
+        static Entry of(byte[] body, String contentType) {
+            return new Entry(body, contentType, null, null, 0);
+        }
+
+        /**
+         * Creates a copy of this entry with the freshness of a {@code 304 Not Modified} response
+         *
+         * @param connection the connection of the response
+         * @param now        the time the request was sent
+         * @return the revalidated entry
+         */
+        Entry revalidate(HttpURLConnection connection, long now) {
+            String etag = connection.getHeaderField("ETag");
+            String lastModified = connection.getHeaderField("Last-Modified");
+            return new Entry(body, contentType, etag != null ? etag : this.etag,
+                    lastModified != null ? lastModified : this.lastModified, getExpires(connection, now));
+        }
+
+        boolean isFresh(long now) {
+            return now < expires;
+        }
+
+        boolean hasValidator() {
+            return etag != null || lastModified != null;
+        }
+
+        private static long getExpires(HttpURLConnection connection, long now) {
+            String cacheControl = connection.getHeaderField("Cache-Control");
+            if (getDirective(cacheControl, "no-cache") != null)
+                return now;
+            String maxAge = getDirective(cacheControl, "max-age");
+            if (maxAge != null) {
+                try {
+                    return now + Long.parseLong(maxAge) * 1000;
+                } catch (NumberFormatException e) {
+                    return now;
+                }
+            }
+            long expires = connection.getHeaderFieldDate("Expires", 0);
+            return expires > 0 ? expires : now;
+        }
+
+        /**
+         * Gets a directive of a {@code Cache-Control} header
+         *
+         * @return the value of the directive, an empty string if it has no value or {@code null} if it is not present
+         */
+        private static String getDirective(String cacheControl, String name) {
+            if (cacheControl == null)
+                return null;
+            for (String directive : cacheControl.split(",")) {
+                String trimmed = directive.trim().toLowerCase(Locale.ROOT);
+                if (trimmed.equals(name))
+                    return "";
+                if (trimmed.startsWith(name + "="))
+                    return trimmed.substring(name.length() + 1).replace("\"", "");
+            }
+            return null;
+        }
+    }
+}
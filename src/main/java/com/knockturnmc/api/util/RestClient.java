@@ -23,12 +23,20 @@ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE
 
 package com.knockturnmc.api.util;
 
-import java.io.BufferedReader;
+import org.apache.commons.io.IOUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.HttpURLConnection;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
 
 /**
  * This class provides the tools to communicate with a JSON RESTful Service
@@ -36,17 +44,127 @@ import java.net.URL;
 public class RestClient {
 
     private final String contentType;
+    private volatile int connectTimeout;
+    private volatile int readTimeout;
+    private volatile RestCache cache;
+    private volatile boolean coalescing;
+    private volatile boolean compression = true;
+    private volatile int requestCompressionThreshold = -1;
+    private volatile Map<String, String> headers = Collections.emptyMap();
+
+    private final SingleFlight<String, RestCache.Entry> inFlight = new SingleFlight<>();
+
+    private static final ThreadLocal<boolean[]> uncoalesced = ThreadLocal.withInitial(() -> new boolean[1]);
 
     protected RestClient(String contentType) {
         this.contentType = contentType;
     }
 
+    /**
+     * Creates a new client that requests and sends the given content type
+     *
+     * @param contentType the content type
+     */
+    public RestClient(ContentType contentType) {
+        this(contentType.getContentType());
+    }
+
+    /**
+     * Sets the timeout for establishing a connection
+     *
+     * @param connectTimeout the timeout in milliseconds, {@code 0} for no timeout
+     */
+    public void setConnectTimeout(int connectTimeout) {
+        if (connectTimeout < 0)
+            throw new IllegalArgumentException("timeout can not be negative");
+        this.connectTimeout = connectTimeout;
+    }
+
+    /**
+     * Sets the timeout for reading from an established connection
+     *
+     * @param readTimeout the timeout in milliseconds, {@code 0} for no timeout
+     */
+    public void setReadTimeout(int readTimeout) {
+        if (readTimeout < 0)
+            throw new IllegalArgumentException("timeout can not be negative");
+        this.readTimeout = readTimeout;
+    }
+
+    /**
+     * Sets the cache for the responses of {@link #doGet(String)} and {@link #doGetBytes(String)}.
+     * Streamed responses are never cached.
+     *
+     * @param cache the cache or {@code null} to disable caching
+     */
+    public void setCache(RestCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Enables coalescing of concurrent identical GET requests of {@link #doGet(String)} and {@link #doGetBytes(String)}.
+     * While a request is in flight, every identical request waits for it and shares its response instead of
+     * opening another connection. Requests of this client are identical if their URL, content type and headers are equal.
+     *
+     * @param coalescing true to enable coalescing
+     */
+    public void setCoalescing(boolean coalescing) {
+        this.coalescing = coalescing;
+    }
+
+    /**
+     * Enables compressed responses. If enabled, the client announces {@code gzip} and {@code deflate}
+     * support and transparently decompresses responses while they are read. Enabled by default.
+     *
+     * @param compression true to accept compressed responses
+     */
+    public void setCompression(boolean compression) {
+        this.compression = compression;
+    }
+
+    /**
+     * Sets the size from which POST bodies are sent gzip compressed.
+     * The server has to support {@code Content-Encoding: gzip} for requests.
+     *
+     * @param threshold the minimum size in bytes or {@code -1} to never compress requests, which is the default
+     */
+    public void setRequestCompressionThreshold(int threshold) {
+        if (threshold < -1)
+            throw new IllegalArgumentException("threshold must be -1 or positive");
+        this.requestCompressionThreshold = threshold;
+    }
+
+    /**
+     * Sets a header that is sent with every request of this client
+     *
+     * @param name  the name of the header
+     * @param value the value or {@code null} to remove the header
+     */
+    public synchronized void setHeader(String name, String value) {
+        if (name == null)
+            throw new IllegalArgumentException("name can not be null");
+        Map<String, String> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        headers.putAll(this.headers);
+        if (value == null)
+            headers.remove(name);
+        else
+            headers.put(name, value);
+        this.headers = Collections.unmodifiableMap(headers);
+    }
+
     protected HttpURLConnection getConnection(String path, String method) throws IOException {
         URL url = new URL(path);
         HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setConnectTimeout(connectTimeout);
+        connection.setReadTimeout(readTimeout);
         connection.setDoOutput(method.equals("POST"));
         connection.setRequestMethod(method);
         connection.setRequestProperty("Accept", contentType);
+        if (compression)
+            connection.setRequestProperty("Accept-Encoding", "gzip, deflate");
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            connection.setRequestProperty(header.getKey(), header.getValue());
+        }
         return connection;
     }
 
@@ -58,10 +176,84 @@ public class RestClient {
      * @throws IOException if the connection failed
      */
     public String doGet(String path) throws IOException {
+        RestCache cache = this.cache;
+        boolean coalescing = this.coalescing;
+        if (cache != null || coalescing) {
+            RestCache.Entry entry = fetch(path, cache, coalescing);
+            return new String(entry.body, RestResponse.getCharset(entry.contentType));
+        }
         HttpURLConnection connection = getConnection(path, "GET");
         return getResponse(connection);
     }
 
+    /**
+     * Executes a HTTP GET request to the given URL
+     *
+     * @param path the path to execute a request
+     * @return the raw response body
+     * @throws IOException if the connection failed
+     */
+    public byte[] doGetBytes(String path) throws IOException {
+        RestCache cache = this.cache;
+        boolean coalescing = this.coalescing;
+        if (cache != null || coalescing)
+            return fetch(path, cache, coalescing).body.clone();
+        try (RestResponse response = openGet(path)) {
+            return response.readBytes();
+        }
+    }
+
+    /**
+     * Executes a HTTP GET request to the given URL and decodes the response while it is read.
+     * The response is decoded by the {@link RestCodec} of the content type of this client.
+     *
+     * @param path the path to execute a request
+     * @param type the type of the response
+     * @param <T>  the type of the response
+     * @return the decoded response
+     * @throws IOException if the connection failed or the response could not be decoded
+     * @see RestCodecs
+     */
+    public <T> T doGet(String path, Class<T> type) throws IOException {
+        RestCodec codec = RestCodecs.getCodec(contentType);
+        RestCache cache = this.cache;
+        boolean coalescing = this.coalescing;
+        if (cache != null || coalescing) {
+            RestCache.Entry entry = fetch(path, cache, coalescing);
+            return codec.decode(new ByteArrayInputStream(entry.body), RestResponse.getCharset(entry.contentType), type);
+        }
+        try (RestResponse response = openGet(path)) {
+            return codec.decode(response.getInputStream(), response.getCharset(), type);
+        }
+    }
+
+    /**
+     * Executes a HTTP GET request to the given URL and streams the response body to the handler in chunks.
+     * The chunks are read into pooled buffers, so the body is never held in memory as a whole.
+     *
+     * @param path    the path to execute a request
+     * @param handler the handler receiving the chunks
+     * @throws IOException if the connection failed or the handler threw an exception
+     */
+    public void doGet(String path, ChunkHandler handler) throws IOException {
+        try (RestResponse response = openGet(path)) {
+            response.read(handler);
+        }
+    }
+
+    /**
+     * Executes a HTTP GET request to the given URL and returns the open response.
+     * The caller is responsible for closing the response.
+     *
+     * @param path the path to execute a request
+     * @return the open response
+     * @throws IOException if the connection failed
+     */
+    public RestResponse openGet(String path) throws IOException {
+        HttpURLConnection connection = getConnection(path, "GET");
+        return new RestResponse(connection, openStream(connection));
+    }
+
     /**
      * Executes a HTTP POST request to the given URL
      *
@@ -73,22 +265,183 @@ public class RestClient {
     public String doPost(String path, String body) throws IOException {
         HttpURLConnection connection = getConnection(path, "POST");
         connection.setRequestProperty("Content-Type", contentType);
-        OutputStream stream = connection.getOutputStream();
-        stream.write(body.getBytes());
-        stream.flush();
-
+        writeBody(connection, body.getBytes());
         return getResponse(connection);
     }
 
+    /**
+     * Executes a HTTP POST request to the given URL.
+     * The body is encoded straight into the request and the response is decoded while it is read,
+     * both by the {@link RestCodec} of the content type of this client. Unless request compression is enabled,
+     * the body is sent in chunks and never held in memory as a whole.
+     *
+     * @param path the path to execute a request
+     * @param body the request body
+     * @param type the type of the response
+     * @param <T>  the type of the response
+     * @return the decoded response
+     * @throws IOException if the connection failed or the body could not be encoded or decoded
+     * @see RestCodecs
+     */
+    public <T> T doPost(String path, Object body, Class<T> type) throws IOException {
+        RestCodec codec = RestCodecs.getCodec(contentType);
+        HttpURLConnection connection = getConnection(path, "POST");
+        connection.setRequestProperty("Content-Type", contentType + "; charset=utf-8");
+        if (requestCompressionThreshold >= 0) {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            codec.encode(body, buffer, StandardCharsets.UTF_8);
+            writeBody(connection, buffer.toByteArray());
+        } else {
+            connection.setChunkedStreamingMode(0);
+            try (OutputStream stream = connection.getOutputStream()) {
+                codec.encode(body, stream, StandardCharsets.UTF_8);
+                stream.flush();
+            }
+        }
+
+        try (RestResponse response = new RestResponse(connection, openStream(connection))) {
+            return codec.decode(response.getInputStream(), response.getCharset(), type);
+        }
+    }
+
+    private void writeBody(HttpURLConnection connection, byte[] bytes) throws IOException {
+        int threshold = requestCompressionThreshold;
+        boolean compress = threshold >= 0 && bytes.length >= threshold;
+        if (compress)
+            connection.setRequestProperty("Content-Encoding", "gzip");
+        try (OutputStream stream = connection.getOutputStream()) {
+            if (compress)
+                Compression.gzip(bytes, stream);
+            else
+                stream.write(bytes);
+            stream.flush();
+        }
+    }
+
     protected String getResponse(HttpURLConnection connection) throws IOException {
-        BufferedReader reader = new BufferedReader(new InputStreamReader(connection.getInputStream()));
+        try (RestResponse response = new RestResponse(connection, openStream(connection))) {
+            return response.readString();
+        }
+    }
 
-        String output;
-        StringBuilder sb = new StringBuilder();
+    /**
+     * Executes a request on the current thread without joining an identical request that is in flight.
+     * A hedged request has to open its own connection instead of waiting for the request it hedges.
+     *
+     * @param request the request
+     * @param <T>     the type of the response
+     * @return the response
+     * @throws IOException if the request failed
+     */
+    static <T> T executeUncoalesced(SingleFlight.Call<T> request) throws IOException {
+        boolean[] scope = uncoalesced.get();
+        boolean previous = scope[0];
+        scope[0] = true;
+        try {
+            return request.call();
+        } finally {
+            scope[0] = previous;
+        }
+    }
+
+    /**
+     * Fetches a response through the cache and coalesces identical requests if enabled
+     */
+    private RestCache.Entry fetch(String path, RestCache cache, boolean coalescing) throws IOException {
+        String key = getRequestKey(path);
+        if (!coalescing || uncoalesced.get()[0])
+            return cache != null ? getCached(cache, key, path) : getUncached(path);
+        return inFlight.execute(key, () -> cache != null ? getCached(cache, key, path) : getUncached(path));
+    }
+
+    private RestCache.Entry getUncached(String path) throws IOException {
+        try (RestResponse response = openGet(path)) {
+            return RestCache.Entry.of(response.readBytes(), response.getHeader("Content-Type"));
+        }
+    }
+
+    private RestCache.Entry getCached(RestCache cache, String key, String path) throws IOException {
+        long now = System.currentTimeMillis();
+        RestCache.Entry entry = cache.get(key);
+        if (entry != null && entry.isFresh(now)) {
+            cache.hit();
+            return entry;
+        }
+
+        HttpURLConnection connection = getConnection(path, "GET");
+        if (entry != null && entry.hasValidator()) {
+            if (entry.etag != null)
+                connection.setRequestProperty("If-None-Match", entry.etag);
+            if (entry.lastModified != null)
+                connection.setRequestProperty("If-Modified-Since", entry.lastModified);
+        }
+
+        try (RestResponse response = new RestResponse(connection, openStream(connection))) {
+            if (entry != null && connection.getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                RestCache.Entry revalidated = entry.revalidate(connection, now);
+                cache.put(key, revalidated);
+                cache.revalidated();
+                return revalidated;
+            }
+
+            cache.miss();
+            byte[] body = response.readBytes();
+            RestCache.Entry updated = RestCache.Entry.of(connection, body, now);
+            if (updated == null) {
+                cache.remove(key);
+                return RestCache.Entry.of(body, connection.getContentType());
+            }
+            cache.put(key, updated);
+            return updated;
+        }
+    }
+
+    private String getRequestKey(String path) {
+        StringBuilder sb = new StringBuilder(contentType);
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            sb.append('\n').append(header.getKey().toLowerCase(Locale.ROOT)).append(": ").append(header.getValue());
+        }
+        return sb.append('\n').append(path).toString();
+    }
+
+    /**
+     * Opens the response stream of a connection.
+     * A compressed response is decompressed while it is read.
+     * If the server responded with an error, the error body is consumed,
+     * so the underlying connection can be kept alive and reused.
+     *
+     * @param connection the connection
+     * @return the response stream, which has to be closed by the caller
+     * @throws IOException if the connection failed
+     * @throws HttpStatusException if the server responded with an error
+     */
+    protected InputStream openStream(HttpURLConnection connection) throws IOException {
+        InputStream stream;
+        try {
+            stream = connection.getInputStream();
+        } catch (IOException e) {
+            InputStream error = connection.getErrorStream();
+            if (error != null) {
+                try (InputStream in = error) {
+                    IOUtils.skip(in, Long.MAX_VALUE);
+                } catch (IOException ignored) {
+                }
+            }
+            int status = -1;
+            try {
+                status = connection.getResponseCode();
+            } catch (IOException ignored) {
+            }
+            if (status >= 400)
+                throw new HttpStatusException(status, "Server returned HTTP response code: " + status + " for URL: " + connection.getURL(), e);
+            throw e;
+        }
 
-        while ((output = reader.readLine()) != null) {
-            sb.append(output);
+        try {
+            return Compression.decompress(stream, connection.getContentEncoding());
+        } catch (IOException e) {
+            stream.close();
+            throw e;
         }
-        return sb.toString();
     }
 }
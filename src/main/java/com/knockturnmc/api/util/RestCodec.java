@@ -0,0 +1,59 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2016 Sven Olderaan, http://knockturnmc.com/
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE
+ */
+
+package com.knockturnmc.api.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+
+/**
+ * Decodes response bodies into objects and encodes objects into request bodies of a content type
+ *
+ * @see RestCodecs
+ */
+public interface RestCodec {
+
+    /**
+     * Decodes a response body while it is read
+     *
+     * @param stream  the response body, which is closed by the caller
+     * @param charset the charset of the response
+     * @param type    the target type
+     * @param <T>     the target type
+     * @return the decoded object
+     * @throws IOException if the body could not be read or decoded
+     */
+    <T> T decode(InputStream stream, Charset charset, Class<T> type) throws IOException;
+
+    /**
+     * Encodes an object into a request body
+     *
+     * @param value   the object
+     * @param stream  the request body, which is flushed and closed by the caller
+     * @param charset the charset of the request
+     * @throws IOException if the object could not be written or encoded
+     */
+    void encode(Object value, OutputStream stream, Charset charset) throws IOException;
+}
@@ -0,0 +1,82 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2016 Sven Olderaan, http://knockturnmc.com/
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE
+ */
+
+package com.knockturnmc.api.util;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The registry of {@link RestCodec}s used by {@link RestClient} to decode and encode typed bodies.
+ * <p>
+ * Built in is a codec for flat {@link ContentType#JSON} objects, which maps the members of an object
+ * to the fields of a class or to a {@link Map}, see {@link #getCodec(ContentType)}.
+ */
+public final class RestCodecs {
+
+    private static final Map<String, RestCodec> codecs = new ConcurrentHashMap<>();
+
+    static {
+        codecs.put(ContentType.JSON.getContentType(), new JsonCodec());
+    }
+
+    private RestCodecs() {
+    }
+
+    /**
+     * Registers a codec for a content type, replacing the existing one
+     *
+     * @param contentType the content type
+     * @param codec       the codec
+     */
+    public static void register(ContentType contentType, RestCodec codec) {
+        if (contentType == null || codec == null)
+            throw new IllegalArgumentException("contentType and codec can not be null");
+        codecs.put(contentType.getContentType(), codec);
+    }
+
+    /**
+     * Gets the codec for a content type.
+     * The built in JSON codec decodes objects into a {@link Map} or a class with a no-args constructor,
+     * whose non-static, non-transient fields are converted by the {@link PropertyConverters}.
+     * Collection and array fields are written as JSON arrays and read from flat arrays of values.
+     * Members that are not mapped to a field are skipped, nested objects and nested arrays are not supported.
+     *
+     * @param contentType the content type
+     * @return the codec
+     * @throws IllegalArgumentException if no codec is registered for the content type
+     */
+    public static RestCodec getCodec(ContentType contentType) {
+        return getCodec(contentType.getContentType());
+    }
+
+    static RestCodec getCodec(String contentType) {
+        int end = contentType.indexOf(';');
+        String mime = (end < 0 ? contentType : contentType.substring(0, end)).trim().toLowerCase(Locale.ROOT);
+        RestCodec codec = codecs.get(mime);
+        if (codec == null)
+            throw new IllegalArgumentException("No codec registered for " + mime);
+        return codec;
+    }
+}
@@ -0,0 +1,209 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2016 Sven Olderaan, http://knockturnmc.com/
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE
+ */
+
+package com.knockturnmc.api.util;
+
+import java.io.*;
+import java.net.HttpURLConnection;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.StandardCharsets;
+import java.nio.charset.UnsupportedCharsetException;
+
+/**
+ * An open HTTP response whose body can be streamed.
+ * The response has to be closed after the body was consumed, so the connection can be reused.
+ *
+ * @see RestClient#openGet(String)
+ */
+public final class RestResponse implements Closeable {
+
+    private final HttpURLConnection connection;
+    private final InputStream stream;
+
+    RestResponse(HttpURLConnection connection, InputStream stream) {
+        this.connection = connection;
+        this.stream = stream;
+    }
+
+    /**
+     * Gets the HTTP status code
+     *
+     * @return the status code
+     * @throws IOException if the status could not be read
+     */
+    public int getStatus() throws IOException {
+        return connection.getResponseCode();
+    }
+
+    /**
+     * Gets a response header
+     *
+     * @param name the name of the header
+     * @return the value or {@code null} if the header is not present
+     */
+    public String getHeader(String name) {
+        return connection.getHeaderField(name);
+    }
+
+    /**
+     * Gets the length of the body as announced by the server
+     *
+     * @return the length or {@code -1} if it is unknown or the body is compressed
+     */
+    public long getContentLength() {
+        String encoding = connection.getContentEncoding();
+        if (encoding != null && !encoding.trim().isEmpty() && !encoding.trim().equalsIgnoreCase("identity"))
+            return -1;
+        return connection.getContentLengthLong();
+    }
+
+    /**
+     * Gets the charset of the body from the {@code Content-Type} header
+     *
+     * @return the charset, {@code UTF-8} if none or an unsupported one was sent
+     */
+    public Charset getCharset() {
+        return getCharset(connection.getContentType());
+    }
+
+    /**
+     * Gets the body as a stream
+     *
+     * @return the stream
+     */
+    public InputStream getInputStream() {
+        return stream;
+    }
+
+    /**
+     * Gets the body as a channel
+     *
+     * @return the channel
+     */
+    public ReadableByteChannel getChannel() {
+        return Channels.newChannel(stream);
+    }
+
+    /**
+     * Gets the body as a reader using the charset of the response
+     *
+     * @return the reader
+     */
+    public Reader getReader() {
+        return new InputStreamReader(stream, getCharset());
+    }
+
+    /**
+     * Reads the body in chunks using a pooled buffer
+     *
+     * @param handler the handler receiving the chunks
+     * @throws IOException if the body could not be read or handled
+     */
+    public void read(ChunkHandler handler) throws IOException {
+        ByteBuffer buffer = ByteBufferPool.DEFAULT.acquire();
+        try {
+            ReadableByteChannel channel = getChannel();
+            while (channel.read(buffer) >= 0) {
+                if (buffer.position() == 0)
+                    continue;
+                buffer.flip();
+                handler.onChunk(buffer);
+                buffer.clear();
+            }
+        } finally {
+            ByteBufferPool.DEFAULT.release(buffer);
+        }
+    }
+
+    /**
+     * Reads the whole body
+     *
+     * @return the body
+     * @throws IOException if the body could not be read
+     */
+    public byte[] readBytes() throws IOException {
+        long length = getContentLength();
+        if (length >= 0 && length <= Integer.MAX_VALUE) {
+            byte[] bytes = new byte[(int) length];
+            int read = 0;
+            while (read < bytes.length) {
+                int count = stream.read(bytes, read, bytes.length - read);
+                if (count < 0)
+                    throw new EOFException("Response ended after " + read + " of " + length + " bytes");
+                read += count;
+            }
+            return bytes;
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        read(chunk -> out.write(chunk.array(), chunk.arrayOffset() + chunk.position(), chunk.remaining()));
+        return out.toByteArray();
+    }
+
+    /**
+     * Reads the whole body as a string using the charset of the response
+     *
+     * @return the body
+     * @throws IOException if the body could not be read
+     */
+    public String readString() throws IOException {
+        long length = getContentLength();
+        if (length >= 0)
+            return new String(readBytes(), getCharset());
+
+        StringBuilder sb = new StringBuilder();
+        char[] buffer = new char[4096];
+        Reader reader = getReader();
+        int count;
+        while ((count = reader.read(buffer)) >= 0) {
+            sb.append(buffer, 0, count);
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public void close() throws IOException {
+        stream.close();
+    }
+
+    static Charset getCharset(String contentType) {
+        if (contentType != null) {
+            for (String parameter : contentType.split(";")) {
+                String trimmed = parameter.trim();
+                if (trimmed.regionMatches(true, 0, "charset=", 0, 8)) {
+                    String name = trimmed.substring(8).replace("\"", "").trim();
+                    try {
+                        return Charset.forName(name);
+                    } catch (IllegalCharsetNameException | UnsupportedCharsetException e) {
+                        break;
+                    }
+                }
+            }
+        }
+        return StandardCharsets.UTF_8;
+    }
+}
@@ -0,0 +1,143 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2016 Sven Olderaan, http://knockturnmc.com/
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE
+ */
+
+package com.knockturnmc.api.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * A mapped configuration that is reloaded when its file changes.
+ * The current configuration is published through a volatile reference, so {@link #get()} never blocks.
+ * A configuration instance is never modified after it was published, a change always swaps in a new instance.
+ *
+ * @param <T> the type of the mapped configuration
+ * @see ConfigurationUtils#watchConfiguration(ClassLoader, String, File, Class)
+ */
+public final class WatchedConfiguration<T extends NamedProperties> implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(WatchedConfiguration.class);
+
+    private final File file;
+    private final Callable<T> loader;
+    private final List<ConfigurationListener<T>> listeners = new CopyOnWriteArrayList<>();
+    private volatile T current;
+
+    WatchedConfiguration(File file, T initial, Callable<T> loader) {
+        this.file = file;
+        this.current = initial;
+        this.loader = loader;
+    }
+
+    /**
+     * Gets the current configuration
+     *
+     * @return the current configuration
+     */
+    public T get() {
+        return current;
+    }
+
+    /**
+     * Gets the watched file
+     *
+     * @return the file
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Registers a listener that is notified after the configuration changed
+     *
+     * @param listener the listener
+     */
+    public void addListener(ConfigurationListener<T> listener) {
+        if (listener == null)
+            throw new IllegalArgumentException("listener can not be null");
+        listeners.add(listener);
+    }
+
+    /**
+     * Unregisters a listener
+     *
+     * @param listener the listener
+     */
+    public void removeListener(ConfigurationListener<T> listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Stops watching the file. The last loaded configuration is still available through {@link #get()}.
+     */
+    @Override
+    public void close() {
+        ConfigurationWatcher.getInstance().unregister(this);
+    }
+
+    /**
+     * Re-reads the file and swaps in the new configuration if any key changed.
+     * If the file can not be parsed, the current configuration is kept.
+     */
+    void reload() {
+        T updated;
+        try {
+            updated = loader.call();
+        } catch (Exception e) {
+            logger.warn("Failed to reload configuration " + file, e);
+            return;
+        }
+
+        Set<String> changed = getChangedKeys(current.getSnapshot(), updated.getSnapshot());
+        if (changed.isEmpty())
+            return;
+        current = updated;
+
+        for (ConfigurationListener<T> listener : listeners) {
+            try {
+                listener.onChange(updated, changed);
+            } catch (RuntimeException e) {
+                logger.warn("Configuration listener failed for " + file, e);
+            }
+        }
+    }
+
+    static Set<String> getChangedKeys(PropertiesSnapshot previous, PropertiesSnapshot updated) {
+        Set<String> changed = new HashSet<>();
+        previous.forEach((key, value) -> {
+            if (!value.equals(updated.getProperty(key)))
+                changed.add(key);
+        });
+        updated.forEach((key, value) -> {
+            if (!previous.containsKey(key))
+                changed.add(key);
+        });
+        return Collections.unmodifiableSet(changed);
+    }
+}
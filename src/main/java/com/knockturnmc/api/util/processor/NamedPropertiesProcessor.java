@@ -0,0 +1,290 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2016 Sven Olderaan, http://knockturnmc.com/
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE
+ */
+
+package com.knockturnmc.api.util.processor;
+
+import com.knockturnmc.api.util.NamedProperties;
+import com.knockturnmc.api.util.NamedPropertiesBinder;
+import com.knockturnmc.api.util.Property;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.*;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.*;
+
+/**
+ * Generates a {@link NamedPropertiesBinder} for every {@link NamedProperties} class with {@link Property} fields.
+ * The generated binder assigns the fields directly, so no reflection is needed when the configuration is loaded.
+ * <p>
+ * A binder is only generated if all mapped fields can be accessed from the package of the class,
+ * i.e. neither the class, its enclosing classes nor the fields are private and all field types are supported.
+ * Otherwise the mapping falls back to reflection at runtime.
+ */
+public class NamedPropertiesProcessor extends AbstractProcessor {
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        return Collections.singleton(Property.class.getName());
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        Map<TypeElement, List<VariableElement>> mappings = new LinkedHashMap<>();
+        for (Element element : roundEnv.getElementsAnnotatedWith(Property.class)) {
+            if (element.getKind() != ElementKind.FIELD)
+                continue;
+            TypeElement type = (TypeElement) element.getEnclosingElement();
+            mappings.computeIfAbsent(type, k -> new ArrayList<>()).add((VariableElement) element);
+        }
+
+        for (Map.Entry<TypeElement, List<VariableElement>> entry : mappings.entrySet()) {
+            TypeElement type = entry.getKey();
+            if (!isNamedProperties(type)) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING,
+                        "@Property is only mapped in subclasses of " + NamedProperties.class.getSimpleName(), type);
+                continue;
+            }
+            List<String> converters = new ArrayList<>();
+            List<String> statements = getStatements(type, entry.getValue(), converters);
+            if (statements == null)
+                continue;
+            try {
+                write(type, converters, statements);
+            } catch (IOException e) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                        "Failed to generate binder: " + e.getMessage(), type);
+            }
+        }
+        return false;
+    }
+
+    private boolean isNamedProperties(TypeElement type) {
+        Types types = processingEnv.getTypeUtils();
+        TypeElement base = processingEnv.getElementUtils().getTypeElement(NamedProperties.class.getCanonicalName());
+        return base != null && types.isSubtype(types.erasure(type.asType()), types.erasure(base.asType()));
+    }
+
+    /**
+     * Creates the binding statements for all mapped fields of a class
+     *
+     * @param converters the list the static converter fields the statements refer to are added to
+     * @return the statements or {@code null} if the class can not be bound without reflection
+     */
+    private List<String> getStatements(TypeElement type, List<VariableElement> fields, List<String> converters) {
+        PackageElement pkg = processingEnv.getElementUtils().getPackageOf(type);
+        if (type.getNestingKind() == NestingKind.LOCAL || type.getNestingKind() == NestingKind.ANONYMOUS)
+            return null;
+        if (!isAccessible(type, pkg))
+            return null;
+
+        List<String> statements = new ArrayList<>();
+        for (VariableElement field : fields) {
+            Set<Modifier> modifiers = field.getModifiers();
+            if (modifiers.contains(Modifier.PRIVATE) || modifiers.contains(Modifier.FINAL) || modifiers.contains(Modifier.STATIC))
+                return null;
+            String statement = getStatement(field, pkg, converters);
+            if (statement == null)
+                return null;
+            statements.add(statement);
+        }
+        return statements;
+    }
+
+    private String getStatement(VariableElement field, PackageElement pkg, List<String> converters) {
+        Property property = field.getAnnotation(Property.class);
+        String key = literal(property.value());
+        String name = field.getSimpleName().toString();
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("        val = (String) instance.get(").append(key).append(");\n");
+        sb.append("        if (val == null) {\n");
+        sb.append("            val = ").append(literal(property.defaultvalue())).append(";\n");
+        sb.append("            instance.setProperty(").append(key).append(", val);\n");
+        sb.append("        }\n");
+
+        TypeMirror fieldType = field.asType();
+        TypeMirror enumType = getEnumType(field);
+        if (enumType != null) {
+            TypeElement enumElement = (TypeElement) ((DeclaredType) enumType).asElement();
+            if (enumElement.getKind() != ElementKind.ENUM || !isAccessible(enumElement, pkg)
+                    || !processingEnv.getTypeUtils().isAssignable(enumType, fieldType))
+                return null;
+            // enums are converted through the registry, so registered converters apply like in the reflective plan.
+            // The converter is resolved on the first bind and kept in a static field of the binder.
+            String enumName = enumElement.getQualifiedName().toString();
+            String converter = name + "Converter";
+            converters.add("    private static com.knockturnmc.api.util.PropertyConverter<?> " + converter + ";\n");
+            sb.append("        if (").append(converter).append(" == null)\n");
+            sb.append("            ").append(converter).append(" = com.knockturnmc.api.util.PropertyConverters.getConverter(")
+                    .append(enumName).append(".class);\n");
+            appendConversion(sb, name, "(" + enumName + ") " + converter + ".convert(val)",
+                    "java.lang.IllegalArgumentException", enumElement.getSimpleName().toString(), key);
+            return sb.toString();
+        }
+
+        switch (fieldType.getKind()) {
+            case INT:
+                appendParse(sb, name, "java.lang.Integer.parseInt(val.isEmpty() ? \"0\" : val)", "integer", key);
+                break;
+            case LONG:
+                appendParse(sb, name, "java.lang.Long.parseLong(val.isEmpty() ? \"0\" : val)", "long", key);
+                break;
+            case BOOLEAN:
+                sb.append("        instance.").append(name).append(" = java.lang.Boolean.parseBoolean(val);\n");
+                break;
+            case DECLARED:
+                if (!fieldType.toString().equals(String.class.getName()))
+                    return null;
+                sb.append("        instance.").append(name).append(" = val;\n");
+                break;
+            default:
+                return null;
+        }
+        return sb.toString();
+    }
+
+    private void appendParse(StringBuilder sb, String name, String expression, String description, String key) {
+        appendConversion(sb, name, expression, "java.lang.NumberFormatException", description, key);
+    }
+
+    private void appendConversion(StringBuilder sb, String name, String expression, String exception, String description, String key) {
+        sb.append("        try {\n");
+        sb.append("            instance.").append(name).append(" = ").append(expression).append(";\n");
+        sb.append("        } catch (").append(exception).append(" e) {\n");
+        sb.append("            throw new java.lang.RuntimeException(\"Invalid ").append(description)
+                .append(" for field \" + ").append(key).append(" + \"=\" + val, e);\n");
+        sb.append("        }\n");
+    }
+
+    /**
+     * Gets the enum type of a property, since the class value of an annotation can not be read at compile time
+     *
+     * @return the enum type or {@code null} if not set
+     */
+    private TypeMirror getEnumType(VariableElement field) {
+        for (AnnotationMirror mirror : field.getAnnotationMirrors()) {
+            TypeElement annotation = (TypeElement) mirror.getAnnotationType().asElement();
+            if (!annotation.getQualifiedName().contentEquals(Property.class.getName()))
+                continue;
+            for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : mirror.getElementValues().entrySet()) {
+                if (!entry.getKey().getSimpleName().contentEquals("type"))
+                    continue;
+                TypeMirror type = (TypeMirror) entry.getValue().getValue();
+                if (type.getKind() != TypeKind.DECLARED || type.toString().equals(Void.class.getName()))
+                    return null;
+                return type;
+            }
+        }
+        return null;
+    }
+
+    private boolean isAccessible(TypeElement type, PackageElement pkg) {
+        Elements elements = processingEnv.getElementUtils();
+        Element current = type;
+        while (current instanceof TypeElement) {
+            Set<Modifier> modifiers = current.getModifiers();
+            if (modifiers.contains(Modifier.PRIVATE))
+                return false;
+            if (!modifiers.contains(Modifier.PUBLIC) && !elements.getPackageOf(current).equals(pkg))
+                return false;
+            current = current.getEnclosingElement();
+        }
+        return true;
+    }
+
+    private void write(TypeElement type, List<String> converters, List<String> statements) throws IOException {
+        Elements elements = processingEnv.getElementUtils();
+        String pkg = elements.getPackageOf(type).getQualifiedName().toString();
+        String binaryName = elements.getBinaryName(type).toString();
+        String simpleName = (pkg.isEmpty() ? binaryName : binaryName.substring(pkg.length() + 1)) + NamedPropertiesBinder.SUFFIX;
+        String typeName = type.getQualifiedName().toString();
+
+        JavaFileObject file = processingEnv.getFiler().createSourceFile(binaryName + NamedPropertiesBinder.SUFFIX, type);
+        try (Writer writer = file.openWriter()) {
+            if (!pkg.isEmpty())
+                writer.write("package " + pkg + ";\n\n");
+            writer.write("/**\n * Generated by " + getClass().getName() + ", do not edit.\n */\n");
+            writer.write("@SuppressWarnings(\"unchecked\")\n");
+            writer.write("public final class " + simpleName + " implements "
+                    + NamedPropertiesBinder.class.getName() + "<" + typeName + "> {\n\n");
+            for (String converter : converters) {
+                writer.write(converter);
+            }
+            if (!converters.isEmpty())
+                writer.write("\n");
+            writer.write("    @Override\n");
+            writer.write("    public void bind(" + typeName + " instance) {\n");
+            writer.write("        String val;\n");
+            for (String statement : statements) {
+                writer.write(statement);
+            }
+            writer.write("    }\n");
+            writer.write("}\n");
+        }
+    }
+
+    private static String literal(String value) {
+        StringBuilder sb = new StringBuilder("\"");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20 || c > 0x7e)
+                        sb.append(String.format("\\u%04x", (int) c));
+                    else
+                        sb.append(c);
+            }
+        }
+        return sb.append('"').toString();
+    }
+}
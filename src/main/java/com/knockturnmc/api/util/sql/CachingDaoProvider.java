@@ -0,0 +1,180 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2016 Sven Olderaan, http://knockturnmc.com/
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE
+ */
+
+package com.knockturnmc.api.util.sql;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * A {@link DaoProvider} that caches the query results of the daos of another provider.
+ * <p>
+ * The results of {@link Query} methods are cached by their method and arguments, streams are never cached.
+ * {@link Update} methods invalidate the results of the entity given by their {@link CacheKey} parameter,
+ * or all results of the dao if they have none. Other methods are passed through.
+ * Cached results are shared between callers, so they must not be modified. Lists are returned unmodifiable.
+ */
+public class CachingDaoProvider implements DaoProvider {
+
+    private final DaoProvider delegate;
+    private final int maxSize;
+    private final long ttl;
+    private final TimeUnit unit;
+    private final ConcurrentMap<Class<?>, Dao> daos = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Class<?>, DaoCache> caches = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a new caching provider
+     *
+     * @param delegate the provider of the cached daos
+     * @param maxSize  the maximum amount of cached results per dao
+     * @param ttl      the time after which a cached result expires
+     * @param unit     the unit of the time
+     */
+    public CachingDaoProvider(DaoProvider delegate, int maxSize, long ttl, TimeUnit unit) {
+        if (delegate == null)
+            throw new IllegalArgumentException("delegate can not be null");
+        if (maxSize < 1 || ttl < 0)
+            throw new IllegalArgumentException("maxSize must be positive and ttl can not be negative");
+        this.delegate = delegate;
+        this.maxSize = maxSize;
+        this.ttl = ttl;
+        this.unit = unit;
+    }
+
+    @Override
+    public <T extends Dao> T getDao(Class<T> target) {
+        return target.cast(daos.computeIfAbsent(target, this::create));
+    }
+
+    /**
+     * Gets the cache of a dao
+     *
+     * @param target the dao
+     * @return the cache
+     */
+    public DaoCache getCache(Class<? extends Dao> target) {
+        getDao(target);
+        return caches.get(target);
+    }
+
+    private Dao create(Class<?> target) {
+        @SuppressWarnings("unchecked")
+        Dao dao = delegate.getDao((Class<? extends Dao>) target);
+        DaoCache cache = new DaoCache(maxSize, ttl, unit);
+        Map<Method, Operation> operations = new HashMap<>();
+        for (Method method : target.getMethods()) {
+            int key = getKeyIndex(method);
+            if (method.isAnnotationPresent(Query.class) && method.getReturnType() != Stream.class)
+                operations.put(method, new Operation(true, key));
+            else if (method.isAnnotationPresent(Update.class))
+                operations.put(method, new Operation(false, key));
+        }
+        caches.put(target, cache);
+        return (Dao) Proxy.newProxyInstance(target.getClassLoader(), new Class[]{target}, new CachingHandler(dao, cache, operations));
+    }
+
+    private static int getKeyIndex(Method method) {
+        Annotation[][] annotations = method.getParameterAnnotations();
+        for (int i = 0; i < annotations.length; i++) {
+            for (Annotation annotation : annotations[i]) {
+                if (annotation instanceof CacheKey)
+                    return i;
+            }
+        }
+        return -1;
+    }
+
+    private static final class Operation {
+        private final boolean query;
+        private final int key;
+
+        private Operation(boolean query, int key) {
+            this.query = query;
+            this.key = key;
+        }
+    }
+
+    private static final class CachingHandler implements InvocationHandler {
+        private final Dao dao;
+        private final DaoCache cache;
+        private final Map<Method, Operation> operations;
+
+        private CachingHandler(Dao dao, DaoCache cache, Map<Method, Operation> operations) {
+            this.dao = dao;
+            this.cache = cache;
+            this.operations = operations;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Operation operation = operations.get(method);
+            if (operation == null) {
+                switch (method.getName()) {
+                    case "equals":
+                        return proxy == args[0];
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    case "toString":
+                        return "Caching" + dao;
+                }
+                return call(method, args);
+            }
+
+            Object entity = operation.key >= 0 ? args[operation.key] : null;
+            if (operation.query) {
+                DaoCache.Key key = new DaoCache.Key(method, args == null ? null : args.clone(), entity);
+                return cache.get(key, () -> {
+                    Object result = call(method, args);
+                    return result instanceof List ? Collections.unmodifiableList(new ArrayList<>((List<?>) result)) : result;
+                });
+            }
+
+            try {
+                return call(method, args);
+            } finally {
+                cache.invalidate(entity);
+            }
+        }
+
+        private Object call(Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(dao, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
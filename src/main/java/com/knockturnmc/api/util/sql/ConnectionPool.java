@@ -0,0 +1,747 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2016 Sven Olderaan, http://knockturnmc.com/
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE
+ */
+
+package com.knockturnmc.api.util.sql;
+
+import com.knockturnmc.api.util.LatencyHistogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.CallableStatement;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A bounded pool of JDBC connections.
+ * <p>
+ * Borrowing does not take a lock: a thread first tries the connection it used last, then claims any idle connection
+ * of the pool and finally opens a new connection while the pool is below its maximum size. If the pool is exhausted,
+ * the thread waits until a connection is returned, or until the connection timeout elapsed.
+ * <p>
+ * Connections are validated when they are borrowed, unless they were used within the last 500 milliseconds.
+ * Closing a borrowed connection returns it to the pool, uncommitted transactions are rolled back,
+ * statements that were not closed are closed and changed connection settings are restored.
+ * <p>
+ * Every physical connection can keep a cache of prepared statements, see {@link #setStatementCacheSize(int)}.
+ * <p>
+ * Once the pool is used, a housekeeping task keeps {@code minIdle} connections open and closes connections
+ * that were idle longer than the idle timeout, see {@link #setIdleTimeout(long)}.
+ */
+public class ConnectionPool implements SqlDatasource, Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConnectionPool.class);
+    private static final AtomicInteger poolCounter = new AtomicInteger();
+    private static final long VALIDATION_BYPASS = TimeUnit.MILLISECONDS.toNanos(500);
+
+    private static final int REMOVED = -1;
+    private static final int IDLE = 0;
+    private static final int IN_USE = 1;
+
+    private final SqlDatasource factory;
+    private final int minIdle;
+    private final int maxSize;
+    private final List<PooledConnection> connections = new CopyOnWriteArrayList<>();
+    private final ThreadLocal<PooledConnection> lastUsed = new ThreadLocal<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition available = lock.newCondition();
+    private final AtomicInteger total = new AtomicInteger();
+    private final AtomicInteger waiters = new AtomicInteger();
+    private final ScheduledThreadPoolExecutor housekeeper;
+    private final LatencyHistogram waitTime = new LatencyHistogram();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder leaks = new LongAdder();
+    private final StatementCache.Stats statementStats = new StatementCache.Stats();
+    private final AtomicBoolean started = new AtomicBoolean();
+
+    private volatile long connectionTimeout = TimeUnit.SECONDS.toNanos(30);
+    private volatile int validationTimeout = 5;
+    private volatile long idleTimeout = TimeUnit.MINUTES.toNanos(10);
+    private volatile long leakDetectionThreshold;
+    private volatile int statementCacheSize;
+    private volatile boolean closed;
+
+    /**
+     * Creates a new pool. Once the first connection is borrowed,
+     * connections are opened in the background until {@code minIdle} connections are idle.
+     *
+     * @param factory the datasource that opens the physical connections, for example
+     *                {@code () -> DriverManager.getConnection(url, user, password)}
+     * @param minIdle the minimum amount of idle connections that are kept open
+     * @param maxSize the maximum amount of open connections
+     */
+    public ConnectionPool(SqlDatasource factory, int minIdle, int maxSize) {
+        if (factory == null)
+            throw new IllegalArgumentException("factory can not be null");
+        if (minIdle < 0 || maxSize < 1 || minIdle > maxSize)
+            throw new IllegalArgumentException("invalid pool size");
+        this.factory = factory;
+        this.minIdle = minIdle;
+        this.maxSize = maxSize;
+
+        String name = "ConnectionPool-" + poolCounter.incrementAndGet() + "-housekeeper";
+        this.housekeeper = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        });
+        housekeeper.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * Sets the maximum time a thread waits for a connection if the pool is exhausted
+     *
+     * @param timeout the timeout in milliseconds
+     */
+    public void setConnectionTimeout(long timeout) {
+        if (timeout < 0)
+            throw new IllegalArgumentException("timeout can not be negative");
+        this.connectionTimeout = TimeUnit.MILLISECONDS.toNanos(timeout);
+    }
+
+    /**
+     * Sets the maximum time the validation of a connection may take
+     *
+     * @param timeout the timeout in seconds
+     */
+    public void setValidationTimeout(int timeout) {
+        if (timeout < 1)
+            throw new IllegalArgumentException("timeout must be positive");
+        this.validationTimeout = timeout;
+    }
+
+    /**
+     * Sets the time after which an idle connection is closed, as long as more than {@code minIdle} connections are idle
+     *
+     * @param timeout the timeout in milliseconds or {@code 0} to keep idle connections open, defaults to 10 minutes
+     */
+    public void setIdleTimeout(long timeout) {
+        if (timeout < 0)
+            throw new IllegalArgumentException("timeout can not be negative");
+        this.idleTimeout = TimeUnit.MILLISECONDS.toNanos(timeout);
+    }
+
+    /**
+     * Sets the time after which a connection that was not returned is logged as a possible leak,
+     * together with the stack trace of the thread that borrowed it
+     *
+     * @param threshold the threshold in milliseconds or {@code 0} to disable leak detection, which is the default
+     */
+    public void setLeakDetectionThreshold(long threshold) {
+        if (threshold < 0)
+            throw new IllegalArgumentException("threshold can not be negative");
+        this.leakDetectionThreshold = threshold;
+    }
+
+    /**
+     * Sets the maximum amount of prepared statements cached per physical connection.
+     * Only statements prepared through {@link SqlConnector#prepareStatement(Connection, String)} are cached.
+     * The size applies to connections opened after it was changed.
+     *
+     * @param size the maximum amount of statements or {@code 0} to disable the cache, which is the default
+     */
+    public void setStatementCacheSize(int size) {
+        if (size < 0)
+            throw new IllegalArgumentException("size can not be negative");
+        this.statementCacheSize = size;
+    }
+
+    /**
+     * Borrows a connection from the pool. Closing the connection returns it to the pool.
+     *
+     * @return an open connection
+     * @throws SQLTimeoutException if no connection became available within the connection timeout
+     * @throws SQLException        if the pool is closed or a connection could not be opened
+     */
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (!started.get())
+            start();
+        long start = System.nanoTime();
+        long deadline = start + connectionTimeout;
+        while (true) {
+            PooledConnection connection = borrow(deadline);
+            if (connection == null) {
+                timeouts.increment();
+                throw new SQLTimeoutException("Connection is not available, request timed out after "
+                        + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + "ms");
+            }
+            if (!validate(connection)) {
+                remove(connection);
+                continue;
+            }
+            waitTime.record(System.nanoTime() - start);
+            return connection.lease();
+        }
+    }
+
+    private PooledConnection borrow(long deadline) throws SQLException {
+        if (closed)
+            throw new SQLException("Pool is closed");
+        PooledConnection last = lastUsed.get();
+        if (last != null && last.claim())
+            return last;
+        for (PooledConnection connection : connections) {
+            if (connection.claim())
+                return connection;
+        }
+
+        PooledConnection created = create(IN_USE);
+        if (created != null)
+            return created;
+
+        // a waiter is registered before it scans, so a connection released afterwards always signals it
+        waiters.incrementAndGet();
+        try {
+            lock.lockInterruptibly();
+            try {
+                while (true) {
+                    for (PooledConnection connection : connections) {
+                        if (connection.claim())
+                            return connection;
+                    }
+                    if (closed)
+                        throw new SQLException("Pool is closed");
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0)
+                        return null;
+                    available.awaitNanos(remaining);
+                }
+            } finally {
+                lock.unlock();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a connection", e);
+        } finally {
+            waiters.decrementAndGet();
+        }
+    }
+
+    private void release(PooledConnection connection) {
+        connection.lastAccess = System.nanoTime();
+        if (closed || connection.broken) {
+            remove(connection);
+            return;
+        }
+        connection.state.set(IDLE);
+        lastUsed.set(connection);
+        if (waiters.get() > 0)
+            signalWaiters();
+    }
+
+    private void signalWaiters() {
+        lock.lock();
+        try {
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Opens a new connection if the pool is below its maximum size
+     */
+    private PooledConnection create(int state) throws SQLException {
+        int current;
+        do {
+            current = total.get();
+            if (current >= maxSize || closed)
+                return null;
+        } while (!total.compareAndSet(current, current + 1));
+
+        try {
+            PooledConnection connection = new PooledConnection(factory.getConnection(), state);
+            connections.add(connection);
+            return connection;
+        } catch (SQLException | RuntimeException e) {
+            total.decrementAndGet();
+            throw e;
+        }
+    }
+
+    private boolean validate(PooledConnection connection) {
+        if (System.nanoTime() - connection.lastAccess < VALIDATION_BYPASS)
+            return true;
+        try {
+            return connection.connection.isValid(validationTimeout);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private void remove(PooledConnection connection) {
+        if (connection.state.getAndSet(REMOVED) == REMOVED)
+            return;
+        connections.remove(connection);
+        total.decrementAndGet();
+        if (connection.statements != null)
+            connection.statements.close();
+        try {
+            connection.connection.close();
+        } catch (SQLException e) {
+            logger.debug("Failed to close connection", e);
+        }
+        if (!closed) {
+            try {
+                housekeeper.execute(this::fill);
+            } catch (RejectedExecutionException ignored) {
+            }
+        }
+    }
+
+    /**
+     * Schedules the housekeeping task, which is deferred to the first borrow so the pool is not published
+     * to the housekeeper thread before its construction finished
+     */
+    private void start() {
+        if (!started.compareAndSet(false, true))
+            return;
+        try {
+            housekeeper.scheduleWithFixedDelay(this::housekeep, 0, 30, TimeUnit.SECONDS);
+        } catch (RejectedExecutionException ignored) {
+        }
+    }
+
+    /**
+     * Closes expired idle connections and opens connections up to the minimum amount of idle connections
+     */
+    void housekeep() {
+        evictIdle();
+        fill();
+    }
+
+    /**
+     * Closes connections that were idle longer than the idle timeout, while more than {@code minIdle} are idle
+     */
+    private void evictIdle() {
+        long timeout = idleTimeout;
+        if (timeout == 0)
+            return;
+        int excess = getIdleConnections() - minIdle;
+        long now = System.nanoTime();
+        for (PooledConnection connection : connections) {
+            if (excess <= 0 || closed)
+                return;
+            if (now - connection.lastAccess > timeout && connection.claim()) {
+                // the connection may have been borrowed and returned after the scan, so its idle time is checked again
+                if (now - connection.lastAccess > timeout) {
+                    remove(connection);
+                    excess--;
+                } else {
+                    connection.state.set(IDLE);
+                    if (waiters.get() > 0)
+                        signalWaiters();
+                }
+            }
+        }
+    }
+
+    /**
+     * Opens connections until the minimum amount of idle connections is reached and no thread is waiting
+     */
+    private void fill() {
+        try {
+            while (!closed && (getIdleConnections() < minIdle || waiters.get() > 0)) {
+                PooledConnection connection = create(IDLE);
+                if (connection == null)
+                    return;
+                release(connection);
+            }
+        } catch (SQLException | RuntimeException e) {
+            logger.warn("Failed to open connection", e);
+        }
+    }
+
+    /**
+     * Gets the maximum amount of open connections
+     *
+     * @return the maximum size of the pool
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Gets the amount of open connections
+     *
+     * @return the amount of connections
+     */
+    public int getTotalConnections() {
+        return total.get();
+    }
+
+    /**
+     * Gets the amount of borrowed connections
+     *
+     * @return the amount of borrowed connections
+     */
+    public int getActiveConnections() {
+        int active = 0;
+        for (PooledConnection connection : connections) {
+            if (connection.state.get() == IN_USE)
+                active++;
+        }
+        return active;
+    }
+
+    /**
+     * Gets the amount of idle connections
+     *
+     * @return the amount of idle connections
+     */
+    public int getIdleConnections() {
+        int idle = 0;
+        for (PooledConnection connection : connections) {
+            if (connection.state.get() == IDLE)
+                idle++;
+        }
+        return idle;
+    }
+
+    /**
+     * Gets the amount of threads waiting for a connection
+     *
+     * @return the amount of waiting threads
+     */
+    public int getPendingThreads() {
+        return waiters.get();
+    }
+
+    /**
+     * Gets the time threads waited for a successfully borrowed connection
+     *
+     * @return the wait times
+     */
+    public LatencyHistogram getWaitTime() {
+        return waitTime;
+    }
+
+    /**
+     * Gets the amount of borrow attempts that timed out
+     *
+     * @return the amount of timeouts
+     */
+    public long getTimeouts() {
+        return timeouts.sum();
+    }
+
+    /**
+     * Gets the amount of detected connection leaks
+     *
+     * @return the amount of leaks
+     */
+    public long getLeaks() {
+        return leaks.sum();
+    }
+
+    /**
+     * Gets the amount of prepared statements that were served from the statement caches
+     *
+     * @return the amount of cache hits
+     */
+    public long getStatementCacheHits() {
+        return statementStats.hits.sum();
+    }
+
+    /**
+     * Gets the amount of prepared statements that had to be prepared because they were not cached or in use
+     *
+     * @return the amount of cache misses
+     */
+    public long getStatementCacheMisses() {
+        return statementStats.misses.sum();
+    }
+
+    /**
+     * Gets the amount of prepared statements that were evicted from the statement caches because they were full
+     *
+     * @return the amount of evictions
+     */
+    public long getStatementCacheEvictions() {
+        return statementStats.evictions.sum();
+    }
+
+    /**
+     * Gets the share of prepared statements served from the statement caches
+     *
+     * @return the hit rate between {@code 0} and {@code 1}
+     */
+    public double getStatementCacheHitRate() {
+        long hits = getStatementCacheHits();
+        long total = hits + getStatementCacheMisses();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    /**
+     * Prepares a statement through the statement cache of a borrowed connection
+     *
+     * @param connection the connection
+     * @param sql        the sql
+     * @return the statement or {@code null} if the connection was not borrowed from a pool
+     * @throws SQLException if the statement could not be prepared
+     */
+    static PreparedStatement prepareCached(Connection connection, String sql) throws SQLException {
+        return prepareCached(connection, connection, sql);
+    }
+
+    private static PreparedStatement prepareCached(Connection owner, Connection connection, String sql) throws SQLException {
+        if (!Proxy.isProxyClass(connection.getClass()))
+            return null;
+        InvocationHandler handler = Proxy.getInvocationHandler(connection);
+        if (handler instanceof Lease)
+            return ((Lease) handler).prepareCached(owner, sql);
+        if (!(handler instanceof ConnectionProxy))
+            return null;
+        ConnectionProxy proxy = (ConnectionProxy) handler;
+        PreparedStatement statement = prepareCached(owner, proxy.getTarget(), sql);
+        return statement != null ? proxy.wrap(statement, sql) : null;
+    }
+
+    /**
+     * Closes the pool and all idle connections. Borrowed connections are closed once they are returned.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        signalWaiters();
+        housekeeper.shutdownNow();
+        for (PooledConnection connection : connections) {
+            if (connection.state.compareAndSet(IDLE, IN_USE))
+                remove(connection);
+        }
+    }
+
+    /**
+     * A physical connection of the pool
+     */
+    private final class PooledConnection {
+        private final Connection connection;
+        private final AtomicInteger state;
+        private final boolean autoCommit;
+        private final boolean readOnly;
+        private final int isolation;
+        private final String catalog;
+        private final StatementCache statements;
+        private volatile long lastAccess = System.nanoTime();
+        private volatile boolean broken;
+
+        private PooledConnection(Connection connection, int state) throws SQLException {
+            this.connection = connection;
+            this.state = new AtomicInteger(state);
+            this.autoCommit = connection.getAutoCommit();
+            this.readOnly = connection.isReadOnly();
+            this.isolation = connection.getTransactionIsolation();
+            this.catalog = connection.getCatalog();
+            int cacheSize = statementCacheSize;
+            this.statements = cacheSize > 0 ? new StatementCache(connection, cacheSize, statementStats) : null;
+        }
+
+        private boolean claim() {
+            return state.compareAndSet(IDLE, IN_USE);
+        }
+
+        private Connection lease() {
+            Lease lease = new Lease(this);
+            long threshold = leakDetectionThreshold;
+            if (threshold > 0) {
+                Exception trace = new Exception("Apparent connection leak");
+                lease.leakTask = housekeeper.schedule(() -> {
+                    leaks.increment();
+                    logger.warn("Connection was borrowed more than {}ms ago and has not been returned yet", threshold, trace);
+                }, threshold, TimeUnit.MILLISECONDS);
+            }
+            return (Connection) Proxy.newProxyInstance(ConnectionPool.class.getClassLoader(), new Class[]{Connection.class}, lease);
+        }
+    }
+
+    /**
+     * A single borrow of a connection, which returns the connection to the pool when it is closed
+     */
+    private final class Lease implements InvocationHandler {
+        private final PooledConnection pooled;
+        private final Set<Statement> statements = Collections.newSetFromMap(new IdentityHashMap<>());
+        private volatile boolean closed;
+        private volatile ScheduledFuture<?> leakTask;
+        private boolean dirty;
+
+        private Lease(PooledConnection pooled) {
+            this.pooled = pooled;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    close();
+                    return null;
+                case "isClosed":
+                    return closed || pooled.connection.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Pooled" + pooled.connection;
+                case "unwrap":
+                    // the physical connection is not handed out, closing it would break the pool
+                    if (((Class<?>) args[0]).isInstance(proxy))
+                        return proxy;
+                    throw new SQLException("Pooled connection can not be unwrapped to " + ((Class<?>) args[0]).getName());
+                case "isWrapperFor":
+                    return ((Class<?>) args[0]).isInstance(proxy);
+                case "setAutoCommit":
+                case "setReadOnly":
+                case "setTransactionIsolation":
+                case "setCatalog":
+                    dirty = true;
+                    break;
+            }
+            if (closed)
+                throw new SQLException("Connection is closed");
+            try {
+                Object result = method.invoke(pooled.connection, args);
+                if (result instanceof Statement)
+                    return track((Statement) result, (Connection) proxy);
+                return result;
+            } catch (InvocationTargetException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof SQLException && isFatal((SQLException) cause))
+                    pooled.broken = true;
+                throw cause;
+            }
+        }
+
+        private void close() {
+            if (closed)
+                return;
+            closed = true;
+            ScheduledFuture<?> task = leakTask;
+            if (task != null)
+                task.cancel(false);
+            if (pooled.statements != null)
+                pooled.statements.releaseAll();
+            List<Statement> open;
+            synchronized (statements) {
+                open = new ArrayList<>(statements);
+                statements.clear();
+            }
+            for (Statement statement : open) {
+                try {
+                    statement.close();
+                } catch (SQLException e) {
+                    logger.debug("Failed to close statement", e);
+                }
+            }
+            try {
+                Connection connection = pooled.connection;
+                if (!connection.getAutoCommit())
+                    connection.rollback();
+                if (dirty) {
+                    connection.setAutoCommit(pooled.autoCommit);
+                    connection.setReadOnly(pooled.readOnly);
+                    connection.setTransactionIsolation(pooled.isolation);
+                    if (pooled.catalog != null)
+                        connection.setCatalog(pooled.catalog);
+                }
+                connection.clearWarnings();
+            } catch (SQLException e) {
+                logger.debug("Failed to reset connection, closing it", e);
+                pooled.broken = true;
+            }
+            release(pooled);
+        }
+
+        private PreparedStatement prepareCached(Connection proxy, String sql) throws SQLException {
+            if (closed)
+                throw new SQLException("Connection is closed");
+            PreparedStatement cached = pooled.statements != null ? pooled.statements.prepare(proxy, sql) : null;
+            if (cached != null)
+                return cached;
+            return (PreparedStatement) track(pooled.connection.prepareStatement(sql), proxy);
+        }
+
+        /**
+         * Wraps a statement that is not cached, so it reports the lease as its connection
+         * and is closed when the connection is returned
+         */
+        private Statement track(Statement statement, Connection proxy) {
+            Class<?> type = statement instanceof CallableStatement ? CallableStatement.class
+                    : statement instanceof PreparedStatement ? PreparedStatement.class : Statement.class;
+            Statement tracked = (Statement) Proxy.newProxyInstance(ConnectionPool.class.getClassLoader(), new Class[]{type},
+                    (statementProxy, method, args) -> {
+                        switch (method.getName()) {
+                            case "close":
+                                synchronized (statements) {
+                                    statements.remove(statementProxy);
+                                }
+                                break;
+                            case "getConnection":
+                                return proxy;
+                            case "equals":
+                                return statementProxy == args[0];
+                            case "hashCode":
+                                return System.identityHashCode(statementProxy);
+                            case "toString":
+                                return "Pooled" + statement;
+                        }
+                        try {
+                            return method.invoke(statement, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        }
+                    });
+            synchronized (statements) {
+                statements.add(tracked);
+            }
+            return tracked;
+        }
+
+        private boolean isFatal(SQLException e) {
+            String state = e.getSQLState();
+            return state != null && state.startsWith("08");
+        }
+    }
+}
@@ -0,0 +1,365 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2016 Sven Olderaan, http://knockturnmc.com/
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE
+ */
+
+package com.knockturnmc.api.util.sql;
+
+import com.knockturnmc.api.util.LatencyHistogram;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The bounded cache of the query results of a single dao of a {@link CachingDaoProvider}.
+ * <p>
+ * The cache is split into segments by entity key, each a segmented LRU: new results enter a probation segment
+ * and are promoted to a protected segment when they are read again, so a scan of many entities that are
+ * read only once can not evict frequently read ones. Results of queries without an entity key are spread
+ * over all segments by their query. Results expire after a fixed time after they were loaded.
+ * Concurrent misses of the same query are coalesced into a single load.
+ */
+public final class DaoCache {
+
+    private static final Object NULL = new Object();
+    private static final Object NO_KEY = new Object();
+    private static final int MAX_SEGMENTS = 16;
+
+    private final Segment[] segments;
+    private final long ttl;
+    private final ConcurrentMap<Key, CompletableFuture<Object>> loading = new ConcurrentHashMap<>();
+    private final AtomicLong keylessEpoch = new AtomicLong();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+    private final LatencyHistogram loadTime = new LatencyHistogram();
+
+    DaoCache(int maxSize, long ttl, TimeUnit unit) {
+        int count = Math.min(MAX_SEGMENTS, maxSize);
+        this.segments = new Segment[count];
+        for (int i = 0; i < count; i++) {
+            segments[i] = new Segment(maxSize / count + (i < maxSize % count ? 1 : 0));
+        }
+        this.ttl = unit.toNanos(ttl);
+    }
+
+    /**
+     * Gets a cached result or loads it, waiting for a concurrent load of the same query
+     */
+    Object get(Key key, Loader loader) throws Throwable {
+        Segment segment = getSegment(key);
+        Object value = segment.get(key, System.nanoTime());
+        if (value != null) {
+            hits.increment();
+            return value == NULL ? null : value;
+        }
+        misses.increment();
+
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        CompletableFuture<Object> existing = loading.putIfAbsent(key, future);
+        if (existing != null) {
+            try {
+                value = existing.get();
+            } catch (ExecutionException e) {
+                throw e.getCause();
+            }
+            return value == NULL ? null : value;
+        }
+
+        long snapshot = segment.getEpoch(key);
+        long start = System.nanoTime();
+        try {
+            value = loader.load();
+            long now = System.nanoTime();
+            loadTime.record(now - start);
+            Object masked = value == null ? NULL : value;
+            segment.put(key, masked, now + ttl, snapshot);
+            future.complete(masked);
+            return value;
+        } catch (Throwable t) {
+            future.completeExceptionally(t);
+            throw t;
+        } finally {
+            loading.remove(key, future);
+        }
+    }
+
+    /**
+     * Invalidates the results of an entity and of all queries without an entity
+     *
+     * @param entity the key of the entity or {@code null} to invalidate all results
+     */
+    void invalidate(Object entity) {
+        if (entity == null) {
+            invalidateAll();
+            return;
+        }
+        keylessEpoch.incrementAndGet();
+        loading.keySet().removeIf(key -> key.entity == NO_KEY || key.entity.equals(entity));
+        int removed = getSegment(entity.hashCode()).invalidate(entity);
+        for (Segment segment : segments) {
+            removed += segment.invalidate(NO_KEY);
+        }
+        invalidations.add(removed);
+    }
+
+    /**
+     * Removes all cached results
+     */
+    public void invalidateAll() {
+        keylessEpoch.incrementAndGet();
+        loading.clear();
+        for (Segment segment : segments) {
+            invalidations.add(segment.clear());
+        }
+    }
+
+    private Segment getSegment(Key key) {
+        return getSegment(key.entity == NO_KEY ? key.hash : key.entity.hashCode());
+    }
+
+    private Segment getSegment(int hash) {
+        hash ^= hash >>> 16;
+        return segments[(hash & Integer.MAX_VALUE) % segments.length];
+    }
+
+    /**
+     * Gets the amount of cached results
+     *
+     * @return the amount of results
+     */
+    public int getSize() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    /**
+     * Gets the amount of queries answered from the cache
+     *
+     * @return the amount of hits
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Gets the amount of queries that were not cached, including the ones that waited for a concurrent load
+     *
+     * @return the amount of misses
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Gets the share of queries answered from the cache
+     *
+     * @return the hit rate between {@code 0} and {@code 1}
+     */
+    public double getHitRate() {
+        long hits = getHits();
+        long total = hits + getMisses();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    /**
+     * Gets the amount of results that were evicted because the cache was full
+     *
+     * @return the amount of evictions
+     */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * Gets the amount of results that were removed by updates or {@link #invalidateAll()}
+     *
+     * @return the amount of invalidations
+     */
+    public long getInvalidations() {
+        return invalidations.sum();
+    }
+
+    /**
+     * Gets the time it took to load results from the dao
+     *
+     * @return the load times
+     */
+    public LatencyHistogram getLoadTime() {
+        return loadTime;
+    }
+
+    @FunctionalInterface
+    interface Loader {
+        Object load() throws Throwable;
+    }
+
+    /**
+     * The key of a query result: the method, its arguments and the entity key
+     */
+    static final class Key {
+        private final Method method;
+        private final Object[] args;
+        private final Object entity;
+        private final int hash;
+
+        Key(Method method, Object[] args, Object entity) {
+            this.method = method;
+            this.args = args;
+            this.entity = entity != null ? entity : NO_KEY;
+            this.hash = 31 * method.hashCode() + Arrays.deepHashCode(args);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o)
+                return true;
+            if (!(o instanceof Key))
+                return false;
+            Key other = (Key) o;
+            return hash == other.hash && method.equals(other.method) && Arrays.deepEquals(args, other.args);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private static final class Entry {
+        private final Object value;
+        private final long expires;
+
+        private Entry(Object value, long expires) {
+            this.value = value;
+            this.expires = expires;
+        }
+    }
+
+    private final class Segment {
+        private final int capacity;
+        private final int protectedCapacity;
+        private final LinkedHashMap<Key, Entry> probation = new LinkedHashMap<>(16, 0.75F, true);
+        private final LinkedHashMap<Key, Entry> protectedEntries = new LinkedHashMap<>(16, 0.75F, true);
+        private final Map<Object, Set<Key>> entities = new HashMap<>();
+        // bumped whenever an entity of this segment is invalidated, loads that started before are not cached
+        private volatile long epoch;
+
+        private Segment(int capacity) {
+            this.capacity = capacity;
+            this.protectedCapacity = capacity * 4 / 5;
+        }
+
+        private synchronized Object get(Key key, long now) {
+            Entry entry = protectedEntries.get(key);
+            if (entry == null) {
+                entry = probation.remove(key);
+                if (entry == null)
+                    return null;
+                if (protectedCapacity > 0) {
+                    protectedEntries.put(key, entry);
+                    if (protectedEntries.size() > protectedCapacity) {
+                        Iterator<Map.Entry<Key, Entry>> eldest = protectedEntries.entrySet().iterator();
+                        Map.Entry<Key, Entry> demoted = eldest.next();
+                        eldest.remove();
+                        probation.put(demoted.getKey(), demoted.getValue());
+                    }
+                } else {
+                    probation.put(key, entry);
+                }
+            }
+            if (now - entry.expires >= 0) {
+                remove(key);
+                return null;
+            }
+            return entry.value;
+        }
+
+        private long getEpoch(Key key) {
+            return key.entity == NO_KEY ? keylessEpoch.get() : epoch;
+        }
+
+        private synchronized void put(Key key, Object value, long expires, long snapshot) {
+            if (getEpoch(key) != snapshot || capacity == 0)
+                return;
+            remove(key);
+            probation.put(key, new Entry(value, expires));
+            entities.computeIfAbsent(key.entity, entity -> new HashSet<>()).add(key);
+            while (probation.size() + protectedEntries.size() > capacity) {
+                LinkedHashMap<Key, Entry> victims = probation.isEmpty() ? protectedEntries : probation;
+                remove(victims.keySet().iterator().next());
+                evictions.increment();
+            }
+        }
+
+        private synchronized int invalidate(Object entity) {
+            if (entity != NO_KEY)
+                epoch++;
+            Set<Key> keys = entities.remove(entity);
+            if (keys == null)
+                return 0;
+            for (Key key : keys) {
+                if (probation.remove(key) == null)
+                    protectedEntries.remove(key);
+            }
+            return keys.size();
+        }
+
+        private synchronized int clear() {
+            epoch++;
+            int size = size();
+            probation.clear();
+            protectedEntries.clear();
+            entities.clear();
+            return size;
+        }
+
+        private synchronized int size() {
+            return probation.size() + protectedEntries.size();
+        }
+
+        private void remove(Key key) {
+            if (probation.remove(key) == null && protectedEntries.remove(key) == null)
+                return;
+            Set<Key> keys = entities.get(key.entity);
+            if (keys != null && keys.remove(key) && keys.isEmpty())
+                entities.remove(key.entity);
+        }
+    }
+}
@@ -0,0 +1,358 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2016 Sven Olderaan, http://knockturnmc.com/
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE
+ */
+
+package com.knockturnmc.api.util.sql;
+
+import com.knockturnmc.api.util.LatencyHistogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A datasource that records the time it takes to acquire connections and to execute statements.
+ * <p>
+ * Latencies are recorded into a {@link LatencyHistogram} per sql text, up to a maximum amount of distinct statements.
+ * Statements exceeding that maximum are recorded into a shared histogram. The execution time of a query
+ * is the time until its result set is returned, rows fetched afterwards are not included.
+ * Statements that take longer than the slow query threshold are logged, with their parameters
+ * unless {@link #setLogParameters(boolean)} turned that off.
+ */
+public class InstrumentedDatasource implements SqlDatasource {
+
+    private static final Logger logger = LoggerFactory.getLogger(InstrumentedDatasource.class);
+
+    private final SqlDatasource datasource;
+    private final LatencyHistogram acquireTime = new LatencyHistogram();
+    private final LatencyHistogram otherQueries = new LatencyHistogram();
+    private final Map<String, LatencyHistogram> queries = new ConcurrentHashMap<>();
+    private final AtomicInteger queryCount = new AtomicInteger();
+    private final LongAdder slowQueries = new LongAdder();
+
+    private volatile long slowQueryThreshold = TimeUnit.SECONDS.toNanos(1);
+    private volatile int maxQueries = 256;
+    private volatile boolean logParameters = true;
+
+    /**
+     * Creates a new instrumented datasource
+     *
+     * @param datasource the datasource to instrument
+     */
+    public InstrumentedDatasource(SqlDatasource datasource) {
+        if (datasource == null)
+            throw new IllegalArgumentException("datasource can not be null");
+        this.datasource = datasource;
+    }
+
+    /**
+     * Sets the execution time after which a statement is logged as slow query
+     *
+     * @param threshold the threshold, negative to disable the slow query log
+     * @param unit      the unit of the threshold
+     */
+    public void setSlowQueryThreshold(long threshold, TimeUnit unit) {
+        this.slowQueryThreshold = threshold < 0 ? Long.MAX_VALUE : unit.toNanos(threshold);
+    }
+
+    /**
+     * Sets whether the slow query log includes the bound parameters, which may contain sensitive data
+     *
+     * @param logParameters {@code true} to log the parameters, which is the default
+     */
+    public void setLogParameters(boolean logParameters) {
+        this.logParameters = logParameters;
+    }
+
+    /**
+     * Sets the maximum amount of distinct sql texts that are recorded separately
+     *
+     * @param maxQueries the maximum amount of statements
+     */
+    public void setMaxQueries(int maxQueries) {
+        if (maxQueries < 0)
+            throw new IllegalArgumentException("maxQueries can not be negative");
+        this.maxQueries = maxQueries;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        long start = System.nanoTime();
+        Connection connection = datasource.getConnection();
+        acquireTime.record(System.nanoTime() - start);
+        InstrumentedConnection instrumented = new InstrumentedConnection(connection);
+        instrumented.proxy = (Connection) Proxy.newProxyInstance(InstrumentedDatasource.class.getClassLoader(),
+                new Class[]{Connection.class}, instrumented);
+        return instrumented.proxy;
+    }
+
+    private void record(String sql, long nanos, Object[] params, int paramCount, int batchSize) {
+        LatencyHistogram histogram = getHistogram(sql);
+        histogram.record(nanos);
+        if (nanos >= slowQueryThreshold) {
+            slowQueries.increment();
+            long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+            if (!logParameters) {
+                if (batchSize > 0)
+                    logger.warn("Slow query took {}ms: {} (batch of {})", millis, sql, batchSize);
+                else
+                    logger.warn("Slow query took {}ms: {}", millis, sql);
+            } else if (batchSize > 0) {
+                logger.warn("Slow query took {}ms: {} (batch of {}, last parameters {})",
+                        millis, sql, batchSize, Arrays.toString(Arrays.copyOf(params, paramCount)));
+            } else {
+                logger.warn("Slow query took {}ms: {} {}", millis, sql, Arrays.toString(Arrays.copyOf(params, paramCount)));
+            }
+        }
+    }
+
+    private LatencyHistogram getHistogram(String sql) {
+        if (sql == null)
+            return otherQueries;
+        LatencyHistogram histogram = queries.get(sql);
+        if (histogram != null)
+            return histogram;
+        // a slot is reserved while the entry is inserted, so concurrent inserts can not exceed the maximum
+        histogram = queries.computeIfAbsent(sql, key -> reserve() ? new LatencyHistogram() : null);
+        return histogram != null ? histogram : otherQueries;
+    }
+
+    private boolean reserve() {
+        int current;
+        do {
+            current = queryCount.get();
+            if (current >= maxQueries)
+                return false;
+        } while (!queryCount.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    /**
+     * Gets the time it took to acquire connections from the instrumented datasource
+     *
+     * @return the acquire times
+     */
+    public LatencyHistogram getAcquireTime() {
+        return acquireTime;
+    }
+
+    /**
+     * Gets the execution times of a statement
+     *
+     * @param sql the sql of the statement
+     * @return the execution times or {@code null} if the statement was not recorded separately
+     */
+    public LatencyHistogram getLatency(String sql) {
+        return queries.get(sql);
+    }
+
+    /**
+     * Gets the execution times of all statements that are recorded separately
+     *
+     * @return the execution times by sql
+     */
+    public Map<String, LatencyHistogram> getQueries() {
+        return Collections.unmodifiableMap(queries);
+    }
+
+    /**
+     * Gets the execution times of all statements exceeding the maximum amount of distinct statements
+     *
+     * @return the execution times
+     */
+    public LatencyHistogram getOtherQueries() {
+        return otherQueries;
+    }
+
+    /**
+     * Gets the amount of statements that exceeded the slow query threshold
+     *
+     * @return the amount of slow queries
+     */
+    public long getSlowQueries() {
+        return slowQueries.sum();
+    }
+
+    /**
+     * Resets all recorded latencies
+     */
+    public void reset() {
+        for (String sql : queries.keySet()) {
+            if (queries.remove(sql) != null)
+                queryCount.decrementAndGet();
+        }
+        otherQueries.reset();
+        acquireTime.reset();
+        slowQueries.reset();
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * A connection which instruments its statements
+     */
+    final class InstrumentedConnection implements InvocationHandler, ConnectionProxy {
+        private final Connection connection;
+        private Connection proxy;
+
+        private InstrumentedConnection(Connection connection) {
+            this.connection = connection;
+        }
+
+        @Override
+        public Connection getTarget() {
+            return connection;
+        }
+
+        @Override
+        public PreparedStatement wrap(PreparedStatement statement, String sql) {
+            return (PreparedStatement) instrument(statement, sql);
+        }
+
+        private Statement instrument(Statement statement, String sql) {
+            Class<?> type = statement instanceof CallableStatement ? CallableStatement.class
+                    : statement instanceof PreparedStatement ? PreparedStatement.class : Statement.class;
+            return (Statement) Proxy.newProxyInstance(InstrumentedDatasource.class.getClassLoader(),
+                    new Class[]{type}, new InstrumentedStatement(proxy, statement, sql));
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "createStatement":
+                    return instrument((Statement) InstrumentedDatasource.invoke(connection, method, args), null);
+                case "prepareStatement":
+                case "prepareCall":
+                    return instrument((Statement) InstrumentedDatasource.invoke(connection, method, args), (String) args[0]);
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Instrumented" + connection;
+                default:
+                    return InstrumentedDatasource.invoke(connection, method, args);
+            }
+        }
+    }
+
+    private final class InstrumentedStatement implements InvocationHandler {
+        private final Connection connection;
+        private final Statement statement;
+        private final String sql;
+        private Object[] params = new Object[0];
+        private int paramCount;
+        private String batchSql;
+        private int batchSize;
+
+        private InstrumentedStatement(Connection connection, Statement statement, String sql) {
+            this.connection = connection;
+            this.statement = statement;
+            this.sql = sql;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            switch (name) {
+                case "execute":
+                case "executeQuery":
+                case "executeUpdate":
+                case "executeLargeUpdate":
+                    return execute(method, args, args != null && args.length > 0 ? (String) args[0] : sql, 0);
+                case "executeBatch":
+                case "executeLargeBatch":
+                    int size = batchSize;
+                    batchSize = 0;
+                    String batch = sql != null ? sql : batchSql;
+                    batchSql = null;
+                    return execute(method, args, batch, size);
+                case "addBatch":
+                    batchSize++;
+                    if (args != null && batchSql == null)
+                        batchSql = (String) args[0];
+                    break;
+                case "clearBatch":
+                    batchSize = 0;
+                    batchSql = null;
+                    break;
+                case "clearParameters":
+                    Arrays.fill(params, null);
+                    break;
+                case "setNull":
+                    setParameter((Integer) args[0], null);
+                    break;
+                case "getConnection":
+                    return connection;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Instrumented" + statement;
+                default:
+                    if (sql != null && args != null && args.length >= 2 && args[0] instanceof Integer && name.startsWith("set"))
+                        setParameter((Integer) args[0], args[1]);
+            }
+            return InstrumentedDatasource.invoke(statement, method, args);
+        }
+
+        private Object execute(Method method, Object[] args, String sql, int batchSize) throws Throwable {
+            long start = System.nanoTime();
+            try {
+                return InstrumentedDatasource.invoke(statement, method, args);
+            } finally {
+                record(sql, System.nanoTime() - start, params, paramCount, batchSize);
+            }
+        }
+
+        private void setParameter(int index, Object value) {
+            if (index < 1)
+                return;
+            if (index > params.length)
+                params = Arrays.copyOf(params, Math.max(index, params.length * 2));
+            params[index - 1] = value;
+            paramCount = Math.max(paramCount, index);
+        }
+    }
+}
@@ -0,0 +1,167 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2016 Sven Olderaan, http://knockturnmc.com/
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE
+ */
+
+package com.knockturnmc.api.util.sql;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The progress of a parallel preload of a table into an index by uuid.
+ * The index is readable once all partitions were loaded.
+ *
+ * @param <T> the type of the rows
+ * @see SqlConnector#preload(String, String, Class, int, int)
+ */
+public final class Preload<T> {
+
+    private final String table;
+    private final int partitions;
+    private final AtomicInteger loadedPartitions = new AtomicInteger();
+    private final LongAdder rows = new LongAdder();
+    private final long started = System.nanoTime();
+    private final CompletableFuture<Map<UUID, T>> index = new CompletableFuture<>();
+    private volatile long finished;
+
+    Preload(String table, int partitions) {
+        this.table = table;
+        this.partitions = partitions;
+    }
+
+    void rowLoaded() {
+        rows.increment();
+    }
+
+    void partitionLoaded() {
+        loadedPartitions.incrementAndGet();
+    }
+
+    void complete(List<Map<UUID, T>> loaded) {
+        int size = 0;
+        for (Map<UUID, T> partition : loaded) {
+            size += partition.size();
+        }
+        Map<UUID, T> merged = new HashMap<>((int) (size / 0.75F) + 1);
+        for (Map<UUID, T> partition : loaded) {
+            merged.putAll(partition);
+        }
+        finished = System.nanoTime();
+        index.complete(Collections.unmodifiableMap(merged));
+    }
+
+    void fail(Throwable failure) {
+        finished = System.nanoTime();
+        index.completeExceptionally(failure);
+    }
+
+    /**
+     * Gets the index, which is completed once all partitions were loaded
+     *
+     * @return the unmodifiable index by uuid
+     */
+    public CompletableFuture<Map<UUID, T>> getIndex() {
+        return index;
+    }
+
+    /**
+     * Gets the name of the preloaded table
+     *
+     * @return the table
+     */
+    public String getTable() {
+        return table;
+    }
+
+    /**
+     * Gets the amount of partitions the table is loaded in
+     *
+     * @return the amount of partitions
+     */
+    public int getPartitions() {
+        return partitions;
+    }
+
+    /**
+     * Gets the amount of partitions that were loaded completely
+     *
+     * @return the amount of loaded partitions
+     */
+    public int getLoadedPartitions() {
+        return loadedPartitions.get();
+    }
+
+    /**
+     * Gets the progress of the preload
+     *
+     * @return the share of loaded partitions between 0 and 1
+     */
+    public double getProgress() {
+        return loadedPartitions.get() / (double) partitions;
+    }
+
+    /**
+     * Gets the amount of rows loaded so far
+     *
+     * @return the amount of rows
+     */
+    public long getRows() {
+        return rows.sum();
+    }
+
+    /**
+     * Gets the time since the preload started, or the time it took if it is done
+     *
+     * @param unit the unit of the time
+     * @return the elapsed time
+     */
+    public long getElapsed(TimeUnit unit) {
+        long end = index.isDone() ? finished : System.nanoTime();
+        return unit.convert(end - started, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Gets the average amount of rows loaded per second
+     *
+     * @return the rows per second
+     */
+    public double getRowsPerSecond() {
+        long elapsed = getElapsed(TimeUnit.NANOSECONDS);
+        return elapsed == 0 ? 0 : rows.sum() * 1e9 / elapsed;
+    }
+
+    /**
+     * Checks whether the preload is done, either completely or because a partition failed
+     *
+     * @return true if it is done
+     */
+    public boolean isDone() {
+        return index.isDone();
+    }
+}
@@ -0,0 +1,54 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2016 Sven Olderaan, http://knockturnmc.com/
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE
+ */
+
+package com.knockturnmc.api.util.sql;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a query method of a {@link Dao} interface, which is implemented by {@link SqlDaoProvider}.
+ * The parameters of the method are bound to the placeholders of the statement in their order.
+ * <p>
+ * The method may return a single row or {@code null}, an {@link java.util.Optional}, a {@link java.util.List}
+ * or a {@link java.util.stream.Stream}, which has to be closed. Rows are mapped to simple types like
+ * {@link String}, numbers, enums and {@link java.util.UUID}s from the first column, or to classes with
+ * a no-args constructor whose fields match the column labels.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface Query {
+    /**
+     * The sql of the query, for example: {@code SELECT * FROM users WHERE id = ?}
+     * @return the sql
+     */
+    String value();
+
+    /**
+     * The amount of rows fetched from the database at once, {@code 0} to use the default of the driver
+     * @return the fetch size
+     */
+    int fetchSize() default 0;
+}
@@ -0,0 +1,99 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2016 Sven Olderaan, http://knockturnmc.com/
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE
+ */
+
+package com.knockturnmc.api.util.sql;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Maps the rows of a result set lazily while a stream is consumed
+ *
+ * @param <T> the mapped type
+ */
+final class ResultSetSpliterator<T> extends Spliterators.AbstractSpliterator<T> {
+
+    private final ResultSet result;
+    private final RowMapper<T> mapper;
+
+    private ResultSetSpliterator(ResultSet result, RowMapper<T> mapper) {
+        super(Long.MAX_VALUE, Spliterator.ORDERED);
+        this.result = result;
+        this.mapper = mapper;
+    }
+
+    /**
+     * Creates a stream of the remaining rows of a result set.
+     * Closing the stream closes the given resources in reverse order.
+     *
+     * @param result    the result set
+     * @param mapper    the mapper of the rows
+     * @param resources the resources to close, usually the result set, its statement and connection
+     * @param <T>       the mapped type
+     * @return the stream
+     */
+    static <T> Stream<T> stream(ResultSet result, RowMapper<T> mapper, AutoCloseable... resources) {
+        return StreamSupport.stream(new ResultSetSpliterator<>(result, mapper), false).onClose(() -> close(resources));
+    }
+
+    /**
+     * Closes resources in reverse order
+     *
+     * @param resources the resources, {@code null} elements are skipped
+     * @throws RuntimeException if a resource could not be closed
+     */
+    static void close(AutoCloseable... resources) {
+        RuntimeException failure = null;
+        for (int i = resources.length - 1; i >= 0; i--) {
+            if (resources[i] == null)
+                continue;
+            try {
+                resources[i].close();
+            } catch (Exception e) {
+                if (failure == null)
+                    failure = new RuntimeException("Failed to close result", e);
+                else
+                    failure.addSuppressed(e);
+            }
+        }
+        if (failure != null)
+            throw failure;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super T> action) {
+        try {
+            if (!result.next())
+                return false;
+            action.accept(mapper.map(result));
+            return true;
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to read row", e);
+        }
+    }
+}
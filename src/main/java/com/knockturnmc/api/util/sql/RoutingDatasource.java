@@ -0,0 +1,433 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2016 Sven Olderaan, http://knockturnmc.com/
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE
+ */
+
+package com.knockturnmc.api.util.sql;
+
+import com.knockturnmc.api.util.CircuitBreaker;
+import com.knockturnmc.api.util.LatencyHistogram;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A datasource that routes connections to a primary and several read replicas.
+ * <p>
+ * Connections are opened lazily on their first use. A connection that was set read-only before,
+ * or any connection opened within a {@link #readScope()}, is routed to the healthy replica with the fewest
+ * open connections, all other connections to the primary. If a replica fails to open a connection
+ * it is considered unhealthy for the retry interval and the next replica is tried. If no replica is healthy,
+ * reads fall back to the primary.
+ */
+public class RoutingDatasource implements SqlDatasource {
+
+    private final Node primary;
+    private final Node[] replicas;
+    private final ThreadLocal<int[]> readScopes = ThreadLocal.withInitial(() -> new int[1]);
+    private final AtomicInteger offset = new AtomicInteger();
+
+    private final LongAdder replicaReads = new LongAdder();
+    private final LongAdder primaryReads = new LongAdder();
+    private final LongAdder fallbacks = new LongAdder();
+    private final LongAdder writes = new LongAdder();
+
+    /**
+     * Creates a new routing datasource
+     *
+     * @param primary  the datasource of the primary
+     * @param replicas the datasources of the replicas
+     */
+    public RoutingDatasource(SqlDatasource primary, List<? extends SqlDatasource> replicas) {
+        if (primary == null || replicas == null)
+            throw new IllegalArgumentException("primary and replicas can not be null");
+        this.primary = new Node("primary", primary);
+        this.replicas = new Node[replicas.size()];
+        for (int i = 0; i < this.replicas.length; i++) {
+            this.replicas[i] = new Node("replica-" + i, replicas.get(i));
+        }
+        setRetryInterval(5000);
+    }
+
+    /**
+     * Sets the time a replica is considered unhealthy after it failed to open a connection
+     *
+     * @param retryInterval the interval in milliseconds
+     */
+    public void setRetryInterval(long retryInterval) {
+        if (retryInterval < 0)
+            throw new IllegalArgumentException("retryInterval can not be negative");
+        for (Node replica : replicas) {
+            replica.health = new CircuitBreaker(1, retryInterval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Opens a read scope for the current thread. Until the scope is closed,
+     * all connections of the thread are routed to the replicas.
+     *
+     * @return the scope, which has to be closed by the same thread
+     */
+    public ReadScope readScope() {
+        int[] depth = readScopes.get();
+        depth[0]++;
+        return () -> depth[0]--;
+    }
+
+    /**
+     * Gets a connection. The connection is opened on its first use,
+     * so it can be set read-only before to route it to a replica.
+     *
+     * @return the connection
+     * @throws SQLException if the connection was routed to a replica within a read scope and could not be opened
+     */
+    @Override
+    public Connection getConnection() throws SQLException {
+        RoutedConnection routed = new RoutedConnection();
+        if (readScopes.get()[0] > 0) {
+            routed.readOnly = true;
+            routed.getTarget();
+        }
+        return (Connection) Proxy.newProxyInstance(RoutingDatasource.class.getClassLoader(), new Class[]{Connection.class}, routed);
+    }
+
+    private Routed open(boolean read) throws SQLException {
+        if (!read) {
+            writes.increment();
+            return primary.open();
+        }
+        boolean[] excluded = new boolean[replicas.length];
+        for (int attempt = 0; attempt < replicas.length; attempt++) {
+            int index = selectReplica(excluded);
+            if (index < 0)
+                break;
+            try {
+                Routed routed = replicas[index].open();
+                replicaReads.increment();
+                return routed;
+            } catch (SQLException e) {
+                // the replica is skipped until its retry interval elapsed
+                excluded[index] = true;
+            }
+        }
+        if (replicas.length > 0)
+            fallbacks.increment();
+        primaryReads.increment();
+        return primary.open();
+    }
+
+    private int selectReplica(boolean[] excluded) {
+        int start = offset.getAndIncrement() & Integer.MAX_VALUE;
+        while (true) {
+            int selected = -1;
+            for (int i = 0; i < replicas.length; i++) {
+                int index = (start + i) % replicas.length;
+                Node replica = replicas[index];
+                if (excluded[index] || replica.health.getState() == CircuitBreaker.State.OPEN)
+                    continue;
+                if (selected < 0 || replica.active.get() < replicas[selected].active.get())
+                    selected = index;
+            }
+            if (selected < 0 || replicas[selected].health.allowRequest())
+                return selected;
+            // another thread holds the trial request of this half open replica, choose among the others
+            excluded[selected] = true;
+        }
+    }
+
+    /**
+     * Gets the primary node
+     *
+     * @return the primary
+     */
+    public Node getPrimary() {
+        return primary;
+    }
+
+    /**
+     * Gets the replica nodes
+     *
+     * @return the replicas
+     */
+    public List<Node> getReplicas() {
+        List<Node> nodes = new ArrayList<>(replicas.length);
+        Collections.addAll(nodes, replicas);
+        return Collections.unmodifiableList(nodes);
+    }
+
+    /**
+     * Gets the amount of read connections routed to a replica
+     *
+     * @return the amount of replica reads
+     */
+    public long getReplicaReads() {
+        return replicaReads.sum();
+    }
+
+    /**
+     * Gets the amount of read connections routed to the primary, because no replica was healthy
+     *
+     * @return the amount of primary reads
+     */
+    public long getPrimaryReads() {
+        return primaryReads.sum();
+    }
+
+    /**
+     * Gets the amount of reads that fell back to the primary although replicas were configured
+     *
+     * @return the amount of fallbacks
+     */
+    public long getFallbacks() {
+        return fallbacks.sum();
+    }
+
+    /**
+     * Gets the amount of connections routed to the primary for writing
+     *
+     * @return the amount of writes
+     */
+    public long getWrites() {
+        return writes.sum();
+    }
+
+    /**
+     * A scope in which connections are routed to the replicas
+     */
+    public interface ReadScope extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    /**
+     * A database node of a routing datasource
+     */
+    public static final class Node {
+        private final String name;
+        private final SqlDatasource datasource;
+        private final AtomicInteger active = new AtomicInteger();
+        private final LongAdder connections = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LatencyHistogram acquireTime = new LatencyHistogram();
+        private final LatencyHistogram holdTime = new LatencyHistogram();
+        private volatile CircuitBreaker health = new CircuitBreaker(1, 0, TimeUnit.MILLISECONDS);
+
+        private Node(String name, SqlDatasource datasource) {
+            this.name = name;
+            this.datasource = datasource;
+        }
+
+        private Routed open() throws SQLException {
+            long start = System.nanoTime();
+            Connection connection;
+            try {
+                connection = datasource.getConnection();
+            } catch (SQLException | RuntimeException e) {
+                failures.increment();
+                health.onFailure();
+                throw e;
+            }
+            long now = System.nanoTime();
+            health.onSuccess();
+            acquireTime.record(now - start);
+            connections.increment();
+            active.incrementAndGet();
+            return new Routed(this, connection, now);
+        }
+
+        /**
+         * Gets the name of the node, {@code primary} or {@code replica-<index>}
+         *
+         * @return the name
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Checks whether connections are routed to the node
+         *
+         * @return false if the node failed to open a connection within the retry interval
+         */
+        public boolean isHealthy() {
+            return health.getState() != CircuitBreaker.State.OPEN;
+        }
+
+        /**
+         * Gets the amount of open connections to the node
+         *
+         * @return the amount of open connections
+         */
+        public int getActiveConnections() {
+            return active.get();
+        }
+
+        /**
+         * Gets the amount of connections that were routed to the node
+         *
+         * @return the amount of connections
+         */
+        public long getConnections() {
+            return connections.sum();
+        }
+
+        /**
+         * Gets the amount of connections the node failed to open
+         *
+         * @return the amount of failures
+         */
+        public long getFailures() {
+            return failures.sum();
+        }
+
+        /**
+         * Gets the time it took to open connections to the node
+         *
+         * @return the acquire times
+         */
+        public LatencyHistogram getAcquireTime() {
+            return acquireTime;
+        }
+
+        /**
+         * Gets the time connections to the node were held until they were closed
+         *
+         * @return the hold times
+         */
+        public LatencyHistogram getHoldTime() {
+            return holdTime;
+        }
+    }
+
+    private static final class Routed {
+        private final Node node;
+        private final Connection connection;
+        private final long opened;
+
+        private Routed(Node node, Connection connection, long opened) {
+            this.node = node;
+            this.connection = connection;
+            this.opened = opened;
+        }
+
+        private void close() throws SQLException {
+            node.active.decrementAndGet();
+            node.holdTime.record(System.nanoTime() - opened);
+            connection.close();
+        }
+    }
+
+    /**
+     * A connection that is routed on its first use
+     */
+    final class RoutedConnection implements InvocationHandler, ConnectionProxy {
+        private Routed routed;
+        private boolean readOnly;
+        private boolean autoCommit = true;
+        private boolean closed;
+
+        @Override
+        public synchronized Connection getTarget() throws SQLException {
+            if (closed)
+                throw new SQLException("Connection is closed");
+            if (routed == null) {
+                Routed opened = open(readOnly);
+                try {
+                    if (readOnly)
+                        opened.connection.setReadOnly(true);
+                    if (!autoCommit)
+                        opened.connection.setAutoCommit(false);
+                } catch (SQLException e) {
+                    opened.close();
+                    throw e;
+                }
+                this.routed = opened;
+            }
+            return routed.connection;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            synchronized (this) {
+                switch (method.getName()) {
+                    case "close":
+                        if (!closed) {
+                            closed = true;
+                            if (routed != null)
+                                routed.close();
+                        }
+                        return null;
+                    case "isClosed":
+                        return closed || routed != null && routed.connection.isClosed();
+                    case "equals":
+                        return proxy == args[0];
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    case "toString":
+                        return "Routed" + (routed != null ? routed.node.name + ":" + routed.connection : "(unopened)");
+                    case "unwrap":
+                        if (((Class<?>) args[0]).isInstance(proxy))
+                            return proxy;
+                        break;
+                    case "isWrapperFor":
+                        if (((Class<?>) args[0]).isInstance(proxy))
+                            return true;
+                        break;
+                    case "setReadOnly":
+                        if (routed == null && !closed) {
+                            readOnly = (Boolean) args[0];
+                            return null;
+                        }
+                        break;
+                    case "isReadOnly":
+                        if (routed == null && !closed)
+                            return readOnly;
+                        break;
+                    case "setAutoCommit":
+                        if (routed == null && !closed) {
+                            autoCommit = (Boolean) args[0];
+                            return null;
+                        }
+                        break;
+                    case "getAutoCommit":
+                        if (routed == null && !closed)
+                            return autoCommit;
+                        break;
+                }
+            }
+            try {
+                return method.invoke(getTarget(), args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
@@ -0,0 +1,317 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2016 Sven Olderaan, http://knockturnmc.com/
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE
+ */
+
+package com.knockturnmc.api.util.sql;
+
+import com.knockturnmc.api.util.Utils;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Compiles {@link RowMapper}s and parameter binders.
+ * The fields of a mapped class and their column readers are resolved once per class,
+ * the columns of a query are resolved once per query.
+ */
+final class RowMappers {
+
+    private static final ClassValue<BeanMapping> MAPPINGS = new ClassValue<BeanMapping>() {
+        @Override
+        protected BeanMapping computeValue(Class<?> type) {
+            return new BeanMapping(type);
+        }
+    };
+
+    private static final Map<Class<?>, ColumnReader> READERS = new HashMap<>();
+
+    static {
+        READERS.put(String.class, ResultSet::getString);
+        READERS.put(int.class, ResultSet::getInt);
+        READERS.put(long.class, ResultSet::getLong);
+        READERS.put(short.class, ResultSet::getShort);
+        READERS.put(byte.class, ResultSet::getByte);
+        READERS.put(double.class, ResultSet::getDouble);
+        READERS.put(float.class, ResultSet::getFloat);
+        READERS.put(boolean.class, ResultSet::getBoolean);
+        READERS.put(Integer.class, nullable(ResultSet::getInt));
+        READERS.put(Long.class, nullable(ResultSet::getLong));
+        READERS.put(Short.class, nullable(ResultSet::getShort));
+        READERS.put(Byte.class, nullable(ResultSet::getByte));
+        READERS.put(Double.class, nullable(ResultSet::getDouble));
+        READERS.put(Float.class, nullable(ResultSet::getFloat));
+        READERS.put(Boolean.class, nullable(ResultSet::getBoolean));
+        READERS.put(byte[].class, ResultSet::getBytes);
+        READERS.put(UUID.class, RowMappers::readUUID);
+        READERS.put(Duration.class, (result, index) -> {
+            long millis = result.getLong(index);
+            return result.wasNull() ? null : Duration.ofMillis(millis);
+        });
+    }
+
+    private RowMappers() {
+    }
+
+    /**
+     * Compiles a mapper for the columns of a query
+     *
+     * @param type     the mapped type
+     * @param metadata the columns of the query
+     * @param <T>      the mapped type
+     * @return the mapper
+     * @throws SQLException if the columns could not be read
+     */
+    @SuppressWarnings("unchecked")
+    static <T> RowMapper<T> compile(Class<T> type, ResultSetMetaData metadata) throws SQLException {
+        ColumnReader reader = getReader(type);
+        if (reader != null)
+            return result -> (T) reader.read(result, 1);
+        return (RowMapper<T>) MAPPINGS.get(type).bind(metadata);
+    }
+
+    /**
+     * Checks whether a type is mapped from a single column
+     *
+     * @param type the type
+     * @return true if the type is a single column
+     */
+    static boolean isScalar(Class<?> type) {
+        return getReader(type) != null;
+    }
+
+    /**
+     * Checks whether rows can be mapped to a type, resolving its fields if it is not a single column
+     *
+     * @param type the type
+     * @throws IllegalArgumentException if the type can not be mapped
+     */
+    static void check(Class<?> type) {
+        if (!isScalar(type))
+            MAPPINGS.get(type);
+    }
+
+    /**
+     * Gets the binder for a parameter type.
+     * Enums are bound by their name, {@link UUID}s in their binary form like {@link Utils#getBytes(UUID)}
+     * and {@link Duration}s as milliseconds.
+     *
+     * @param type the type of the parameter
+     * @return the binder
+     */
+    static ParameterBinder getBinder(Class<?> type) {
+        if (type.isEnum())
+            return (statement, index, value) -> statement.setString(index, value == null ? null : ((Enum) value).name());
+        if (type == UUID.class)
+            return (statement, index, value) -> statement.setBytes(index, value == null ? null : Utils.getBytes((UUID) value));
+        if (type == Duration.class)
+            return (statement, index, value) -> {
+                if (value == null)
+                    statement.setNull(index, java.sql.Types.BIGINT);
+                else
+                    statement.setLong(index, ((Duration) value).toMillis());
+            };
+        return PreparedStatement::setObject;
+    }
+
+    /**
+     * Binds a parameter by its runtime type
+     *
+     * @param statement the statement
+     * @param index     the index of the parameter
+     * @param value     the value
+     * @throws SQLException if the parameter could not be bound
+     */
+    static void bind(PreparedStatement statement, int index, Object value) throws SQLException {
+        if (value instanceof Enum)
+            statement.setString(index, ((Enum) value).name());
+        else if (value instanceof UUID || value instanceof Duration)
+            getBinder(value.getClass()).bind(statement, index, value);
+        else
+            statement.setObject(index, value);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ColumnReader getReader(Class<?> type) {
+        ColumnReader reader = READERS.get(type);
+        if (reader != null)
+            return reader;
+        if (type.isEnum()) {
+            Class<? extends Enum> enumType = (Class<? extends Enum>) type;
+            return (result, index) -> {
+                String name = result.getString(index);
+                return name == null ? null : Enum.valueOf(enumType, name);
+            };
+        }
+        if (type.getName().startsWith("java.time.") || type == java.math.BigDecimal.class)
+            return (result, index) -> result.getObject(index, type);
+        return null;
+    }
+
+    private static ColumnReader nullable(ColumnReader reader) {
+        return (result, index) -> {
+            Object value = reader.read(result, index);
+            return result.wasNull() ? null : value;
+        };
+    }
+
+    private static UUID readUUID(ResultSet result, int index) throws SQLException {
+        Object value = result.getObject(index);
+        if (value == null || value instanceof UUID)
+            return (UUID) value;
+        if (value instanceof byte[])
+            return Utils.getUUID((byte[]) value);
+        try {
+            return Utils.formatUUID(value.toString());
+        } catch (IllegalArgumentException e) {
+            throw new SQLException("Invalid UUID in column " + index + ": " + value, e);
+        }
+    }
+
+    private static String normalize(String name) {
+        return name.replace("_", "").toLowerCase(Locale.ROOT);
+    }
+
+    @FunctionalInterface
+    private interface ColumnReader {
+        Object read(ResultSet result, int index) throws SQLException;
+    }
+
+    /**
+     * Binds a parameter to a statement
+     */
+    @FunctionalInterface
+    interface ParameterBinder {
+        void bind(PreparedStatement statement, int index, Object value) throws SQLException;
+    }
+
+    /**
+     * The mapped fields of a class, matched to column labels ignoring case and underscores
+     */
+    private static final class BeanMapping {
+        private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+        private final Class<?> type;
+        private final MethodHandle constructor;
+        private final Map<String, FieldMapping> fields = new HashMap<>();
+
+        private BeanMapping(Class<?> type) {
+            this.type = type;
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            try {
+                Constructor<?> declared = type.getDeclaredConstructor();
+                declared.setAccessible(true);
+                this.constructor = lookup.unreflectConstructor(declared).asType(MethodType.methodType(Object.class));
+            } catch (NoSuchMethodException | IllegalAccessException e) {
+                throw new IllegalArgumentException("Can not map rows to " + type.getName() + " without a no-args constructor", e);
+            }
+
+            for (Class<?> clazz = type; clazz != null && clazz != Object.class; clazz = clazz.getSuperclass()) {
+                for (Field field : clazz.getDeclaredFields()) {
+                    int modifiers = field.getModifiers();
+                    if (Modifier.isStatic(modifiers) || Modifier.isFinal(modifiers) || Modifier.isTransient(modifiers)
+                            || field.isSynthetic())
+                        continue;
+                    ColumnReader reader = getReader(field.getType());
+                    if (reader == null)
+                        continue;
+                    field.setAccessible(true);
+                    try {
+                        fields.putIfAbsent(normalize(field.getName()),
+                                new FieldMapping(lookup.unreflectSetter(field).asType(SETTER_TYPE), reader, field.getType().isPrimitive()));
+                    } catch (IllegalAccessException e) {
+                        throw new RuntimeException("Can not map field " + field.getName() + " of " + type.getName(), e);
+                    }
+                }
+            }
+        }
+
+        private RowMapper<Object> bind(ResultSetMetaData metadata) throws SQLException {
+            int count = metadata.getColumnCount();
+            int[] indexes = new int[count];
+            FieldMapping[] mappings = new FieldMapping[count];
+            int size = 0;
+            for (int column = 1; column <= count; column++) {
+                FieldMapping mapping = fields.get(normalize(metadata.getColumnLabel(column)));
+                if (mapping == null)
+                    continue;
+                indexes[size] = column;
+                mappings[size++] = mapping;
+            }
+            int mapped = size;
+            return result -> {
+                Object instance = newInstance();
+                for (int i = 0; i < mapped; i++) {
+                    FieldMapping mapping = mappings[i];
+                    Object value = mapping.reader.read(result, indexes[i]);
+                    if (value != null || !mapping.primitive)
+                        mapping.set(instance, value);
+                }
+                return instance;
+            };
+        }
+
+        private Object newInstance() {
+            try {
+                return (Object) constructor.invokeExact();
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new RuntimeException("Failed to instantiate " + type.getName(), t);
+            }
+        }
+    }
+
+    private static final class FieldMapping {
+        private final MethodHandle setter;
+        private final ColumnReader reader;
+        private final boolean primitive;
+
+        private FieldMapping(MethodHandle setter, ColumnReader reader, boolean primitive) {
+            this.setter = setter;
+            this.reader = reader;
+            this.primitive = primitive;
+        }
+
+        private void set(Object instance, Object value) {
+            try {
+                setter.invokeExact(instance, value);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new RuntimeException(t);
+            }
+        }
+    }
+}
@@ -23,18 +23,301 @@ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE
 
 package com.knockturnmc.api.util.sql;
 
+import com.knockturnmc.api.util.Utils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
 /**
  * Represents a connector that manages its own sql connection
  */
 public abstract class SqlConnector {
 
     private final Logger logger = LoggerFactory.getLogger(getClass());
+    private static final int ASYNC_QUEUE_CAPACITY = 1024;
+
     protected final SqlDatasource datasource;
+    private volatile SqlExecutor executor;
 
     protected SqlConnector(SqlDatasource datasource) {
         this.datasource = datasource;
     }
+
+    /**
+     * Executes blocking database work asynchronously on the executor of this connector,
+     * so the calling thread never waits for the database.
+     *
+     * @param task the task, which usually calls a dao or opens its own connection
+     * @param <T>  the type of the result
+     * @return the result, which is completed on the executing thread
+     * @see #getExecutor()
+     */
+    protected <T> CompletableFuture<T> async(Callable<T> task) {
+        return getExecutor().submit(task);
+    }
+
+    /**
+     * Executes blocking database work asynchronously on the executor of this connector.
+     *
+     * @param task             the task, which usually calls a dao or opens its own connection
+     * @param callbackExecutor the executor on which the result is completed, for example the main thread
+     * @param <T>              the type of the result
+     * @return the result
+     * @see #getExecutor()
+     */
+    protected <T> CompletableFuture<T> async(Callable<T> task, Executor callbackExecutor) {
+        return getExecutor().submit(task, callbackExecutor);
+    }
+
+    /**
+     * Gets the executor of asynchronous tasks. Unless set, it is created on first use
+     * with as many threads as the datasource has connections if it is a {@link ConnectionPool},
+     * otherwise with as many threads as there are processors.
+     *
+     * @return the executor
+     */
+    protected SqlExecutor getExecutor() {
+        SqlExecutor executor = this.executor;
+        if (executor == null) {
+            synchronized (this) {
+                executor = this.executor;
+                if (executor == null) {
+                    int threads = datasource instanceof ConnectionPool ? ((ConnectionPool) datasource).getMaxSize()
+                            : Runtime.getRuntime().availableProcessors();
+                    this.executor = executor = new SqlExecutor(threads, ASYNC_QUEUE_CAPACITY);
+                }
+            }
+        }
+        return executor;
+    }
+
+    /**
+     * Sets the executor of asynchronous tasks. A previous executor is not closed.
+     *
+     * @param executor the executor
+     */
+    protected void setExecutor(SqlExecutor executor) {
+        if (executor == null)
+            throw new IllegalArgumentException("executor can not be null");
+        this.executor = executor;
+    }
+
+    /**
+     * Prepares a statement. If the connection was borrowed from a {@link ConnectionPool} with a statement cache,
+     * the statement is reused from the cache of the physical connection and closing it returns it to the cache.
+     * Otherwise a new statement is prepared.
+     *
+     * @param connection the connection
+     * @param sql        the sql
+     * @return the statement, which has to be closed by the caller
+     * @throws SQLException if the statement could not be prepared
+     * @see ConnectionPool#setStatementCacheSize(int)
+     */
+    protected PreparedStatement prepareStatement(Connection connection, String sql) throws SQLException {
+        PreparedStatement statement = ConnectionPool.prepareCached(connection, sql);
+        return statement != null ? statement : connection.prepareStatement(sql);
+    }
+
+    /**
+     * Creates a queue that writes asynchronously to the datasource of this connector in batches
+     *
+     * @param capacity      the maximum amount of pending writes
+     * @param maxBatchSize  the amount of pending writes that triggers a flush and the maximum size of a JDBC batch
+     * @param flushInterval the maximum time a write is pending
+     * @param unit          the unit of the interval
+     * @return the started queue, which has to be closed
+     * @see WriteBehindQueue
+     */
+    protected WriteBehindQueue createWriteBehindQueue(int capacity, int maxBatchSize, long flushInterval, TimeUnit unit) {
+        return new WriteBehindQueue(datasource, capacity, maxBatchSize, flushInterval, unit);
+    }
+
+    /**
+     * Executes a query and lazily maps its rows while the returned stream is consumed, so the result is never
+     * held in memory as a whole. Rows are mapped like the results of a {@link Query} method, the columns are
+     * resolved once per query. The connection is held until the stream is closed.
+     *
+     * @param sql       the query
+     * @param type      the type of the rows
+     * @param fetchSize the amount of rows fetched from the database at once, {@code 0} to use the default of the driver
+     * @param params    the parameters of the query
+     * @param <T>       the type of the rows
+     * @return the stream, which has to be closed
+     * @throws SQLException if the query failed
+     */
+    protected <T> Stream<T> stream(String sql, Class<T> type, int fetchSize, Object... params) throws SQLException {
+        RowMappers.check(type);
+        return openStream(sql, metadata -> RowMappers.compile(type, metadata), fetchSize, params);
+    }
+
+    /**
+     * Executes a query and lazily maps its rows while the returned stream is consumed.
+     * The connection is held until the stream is closed.
+     *
+     * @param sql       the query
+     * @param mapper    the mapper of the rows
+     * @param fetchSize the amount of rows fetched from the database at once, {@code 0} to use the default of the driver
+     * @param params    the parameters of the query
+     * @param <T>       the type of the rows
+     * @return the stream, which has to be closed
+     * @throws SQLException if the query failed
+     * @see #stream(String, Class, int, Object...)
+     */
+    protected <T> Stream<T> stream(String sql, RowMapper<T> mapper, int fetchSize, Object... params) throws SQLException {
+        return openStream(sql, metadata -> mapper, fetchSize, params);
+    }
+
+    /**
+     * Loads a whole table into an index by uuid, splitting it into partitions by ranges of its key
+     * that are loaded in parallel on the executor of this connector, each over its own connection.
+     * The key column has to contain uuids in their binary form, see {@link Utils#getBytes(UUID)}.
+     * Ranges are split evenly over the uuid space, so random uuids are distributed evenly between the partitions.
+     * Rows are mapped like the results of a {@link Query} method.
+     *
+     * @param table      the table, which is inserted into the query as is
+     * @param keyColumn  the column of the binary uuid keys, which is inserted into the query as is
+     * @param type       the type of the rows
+     * @param partitions the amount of partitions
+     * @param fetchSize  the amount of rows fetched from the database at once, {@code 0} to use the default of the driver
+     * @param <T>        the type of the rows
+     * @return the progress of the preload, which completes its index once all partitions were loaded
+     * @see #getExecutor()
+     */
+    protected <T> Preload<T> preload(String table, String keyColumn, Class<T> type, int partitions, int fetchSize) {
+        RowMappers.check(type);
+        return openPreload(table, keyColumn, metadata -> RowMappers.compile(type, metadata), partitions, fetchSize);
+    }
+
+    /**
+     * Loads a whole table into an index by uuid, splitting it into partitions by ranges of its key
+     * that are loaded in parallel.
+     *
+     * @param table      the table, which is inserted into the query as is
+     * @param keyColumn  the column of the binary uuid keys, which is inserted into the query as is
+     * @param mapper     the mapper of the rows
+     * @param partitions the amount of partitions
+     * @param fetchSize  the amount of rows fetched from the database at once, {@code 0} to use the default of the driver
+     * @param <T>        the type of the rows
+     * @return the progress of the preload, which completes its index once all partitions were loaded
+     * @see #preload(String, String, Class, int, int)
+     */
+    protected <T> Preload<T> preload(String table, String keyColumn, RowMapper<T> mapper, int partitions, int fetchSize) {
+        return openPreload(table, keyColumn, metadata -> mapper, partitions, fetchSize);
+    }
+
+    private <T> Preload<T> openPreload(String table, String keyColumn, MapperFactory<T> factory, int partitions, int fetchSize) {
+        if (partitions < 1)
+            throw new IllegalArgumentException("partitions must be positive");
+        Preload<T> preload = new Preload<>(table, partitions);
+        MapperFactory<Map.Entry<UUID, T>> keyed = metadata -> {
+            int key = findColumn(metadata, keyColumn);
+            RowMapper<T> mapper = factory.create(metadata);
+            return result -> {
+                byte[] raw = result.getBytes(key);
+                if (raw == null || raw.length != 16)
+                    throw new SQLException("Invalid binary uuid in column " + keyColumn);
+                return new AbstractMap.SimpleImmutableEntry<>(Utils.getUUID(raw), mapper.map(result));
+            };
+        };
+
+        String select = "SELECT * FROM " + table;
+        long step = Long.divideUnsigned(-1L, partitions);
+        List<CompletableFuture<Map<UUID, T>>> loads = new ArrayList<>(partitions);
+        for (int i = 0; i < partitions; i++) {
+            List<Object> bounds = new ArrayList<>(2);
+            StringBuilder sql = new StringBuilder(select);
+            if (i > 0) {
+                sql.append(" WHERE ").append(keyColumn).append(" >= ?");
+                bounds.add(Utils.getBytes(new UUID(step * i, 0)));
+            }
+            if (i < partitions - 1) {
+                sql.append(i > 0 ? " AND " : " WHERE ").append(keyColumn).append(" < ?");
+                bounds.add(Utils.getBytes(new UUID(step * (i + 1), 0)));
+            }
+            loads.add(async(() -> {
+                Map<UUID, T> partition = new HashMap<>();
+                try (Stream<Map.Entry<UUID, T>> rows = openStream(sql.toString(), keyed, fetchSize, bounds.toArray())) {
+                    rows.forEach(row -> {
+                        partition.put(row.getKey(), row.getValue());
+                        preload.rowLoaded();
+                    });
+                }
+                preload.partitionLoaded();
+                return partition;
+            }));
+        }
+
+        CompletableFuture.allOf(loads.toArray(new CompletableFuture[0])).whenComplete((ignored, failure) -> {
+            if (failure != null) {
+                logger.warn("Failed to preload {}", table, failure);
+                preload.fail(failure);
+                return;
+            }
+            List<Map<UUID, T>> loaded = new ArrayList<>(partitions);
+            for (CompletableFuture<Map<UUID, T>> load : loads) {
+                loaded.add(load.join());
+            }
+            preload.complete(loaded);
+            logger.info("Preloaded {} rows from {} in {}ms ({} rows/s)", preload.getRows(), table,
+                    preload.getElapsed(TimeUnit.MILLISECONDS), Math.round(preload.getRowsPerSecond()));
+        });
+        return preload;
+    }
+
+    private static int findColumn(ResultSetMetaData metadata, String column) throws SQLException {
+        for (int i = 1; i <= metadata.getColumnCount(); i++) {
+            if (metadata.getColumnLabel(i).equalsIgnoreCase(column))
+                return i;
+        }
+        throw new SQLException("Column " + column + " not found");
+    }
+
+    private <T> Stream<T> openStream(String sql, MapperFactory<T> factory, int fetchSize, Object[] params) throws SQLException {
+        Connection connection = datasource.getConnection();
+        AutoCloseable restore = null;
+        PreparedStatement statement = null;
+        ResultSet result = null;
+        try {
+            if (fetchSize != 0 && connection.getAutoCommit()) {
+                // some drivers only fetch in chunks within a transaction
+                connection.setAutoCommit(false);
+                restore = () -> connection.setAutoCommit(true);
+            }
+            statement = prepareStatement(connection, sql);
+            statement.setFetchSize(fetchSize);
+            for (int i = 0; i < params.length; i++) {
+                RowMappers.bind(statement, i + 1, params[i]);
+            }
+            result = statement.executeQuery();
+            return ResultSetSpliterator.stream(result, factory.create(result.getMetaData()), connection, restore, statement, result);
+        } catch (SQLException | RuntimeException e) {
+            try {
+                ResultSetSpliterator.close(connection, restore, statement, result);
+            } catch (RuntimeException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw e;
+        }
+    }
+
+    @FunctionalInterface
+    private interface MapperFactory<T> {
+        RowMapper<T> create(ResultSetMetaData metadata) throws SQLException;
+    }
 }
@@ -0,0 +1,310 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2016 Sven Olderaan, http://knockturnmc.com/
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE
+ */
+
+package com.knockturnmc.api.util.sql;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Proxy;
+import java.lang.reflect.Type;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Stream;
+
+/**
+ * A {@link DaoProvider} that implements {@link Dao} interfaces whose methods are annotated with {@link Query} or {@link Update}.
+ * <p>
+ * The methods of an interface are compiled once, when its dao is created: the statements, parameter binders
+ * and result types are resolved up front and the row mapper of a query is compiled on its first execution.
+ * Every interface has a single dao instance. Statements are prepared through {@link #prepareStatement(Connection, String)},
+ * so they are reused if the datasource is a {@link ConnectionPool} with a statement cache.
+ * <p>
+ * Methods that do not declare {@link SQLException} wrap it into a {@link RuntimeException}.
+ * Default methods are not compiled, they are invoked on the dao like on any other implementation.
+ */
+public class SqlDaoProvider extends SqlConnector implements DaoProvider {
+
+    private final ConcurrentMap<Class<?>, Dao> daos = new ConcurrentHashMap<>();
+
+    public SqlDaoProvider(SqlDatasource datasource) {
+        super(datasource);
+    }
+
+    @Override
+    public <T extends Dao> T getDao(Class<T> target) {
+        return target.cast(daos.computeIfAbsent(target, this::create));
+    }
+
+    private Dao create(Class<?> target) {
+        if (!target.isInterface())
+            throw new IllegalArgumentException(target.getName() + " is not an interface");
+        Map<Method, Invoker> invokers = new HashMap<>();
+        Map<Method, MethodHandle> defaults = new HashMap<>();
+        for (Method method : target.getMethods()) {
+            if (Modifier.isStatic(method.getModifiers()))
+                continue;
+            if (method.isDefault())
+                defaults.put(method, getDefaultMethod(method));
+            else
+                invokers.put(method, compile(method));
+        }
+        return (Dao) Proxy.newProxyInstance(target.getClassLoader(), new Class[]{target}, new DaoHandler(target, invokers, defaults));
+    }
+
+    private static MethodHandle getDefaultMethod(Method method) {
+        Class<?> declaring = method.getDeclaringClass();
+        try {
+            MethodHandles.Lookup lookup;
+            try {
+                Method privateLookupIn = MethodHandles.class.getMethod("privateLookupIn", Class.class, MethodHandles.Lookup.class);
+                lookup = (MethodHandles.Lookup) privateLookupIn.invoke(null, declaring, MethodHandles.lookup());
+            } catch (NoSuchMethodException e) {
+                // java 8 has no privateLookupIn, a lookup with private access has to be created directly
+                Constructor<MethodHandles.Lookup> constructor = MethodHandles.Lookup.class.getDeclaredConstructor(Class.class, int.class);
+                constructor.setAccessible(true);
+                lookup = constructor.newInstance(declaring, MethodHandles.Lookup.PRIVATE);
+            }
+            return lookup.unreflectSpecial(method, declaring);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalArgumentException("Can not invoke default method " + method, e);
+        }
+    }
+
+    private Invoker compile(Method method) {
+        Query query = method.getAnnotation(Query.class);
+        Update update = method.getAnnotation(Update.class);
+        if ((query == null) == (update == null))
+            throw new IllegalArgumentException("Method " + method + " must be annotated with either @Query or @Update");
+
+        Class<?>[] parameters = method.getParameterTypes();
+        RowMappers.ParameterBinder[] binders = new RowMappers.ParameterBinder[parameters.length];
+        for (int i = 0; i < parameters.length; i++) {
+            binders[i] = RowMappers.getBinder(parameters[i]);
+        }
+        boolean throwsSql = Arrays.stream(method.getExceptionTypes()).anyMatch(type -> type.isAssignableFrom(SQLException.class));
+
+        Invoker invoker = update != null ? compileUpdate(method, update.value(), binders) : compileQuery(method, query, binders);
+        if (throwsSql)
+            return invoker;
+        return args -> {
+            try {
+                return invoker.invoke(args);
+            } catch (SQLException e) {
+                throw new RuntimeException("Failed to execute " + method.getDeclaringClass().getSimpleName() + "." + method.getName(), e);
+            }
+        };
+    }
+
+    private Invoker compileUpdate(Method method, String sql, RowMappers.ParameterBinder[] binders) {
+        Class<?> returnType = method.getReturnType();
+        if (returnType != void.class && returnType != int.class && returnType != long.class)
+            throw new IllegalArgumentException("Update method " + method + " must return void, int or long");
+        return args -> {
+            int count;
+            try (Connection connection = datasource.getConnection();
+                 PreparedStatement statement = prepare(connection, sql, binders, args)) {
+                count = statement.executeUpdate();
+            }
+            if (returnType == int.class)
+                return count;
+            if (returnType == long.class)
+                return (long) count;
+            return null;
+        };
+    }
+
+    private Invoker compileQuery(Method method, Query query, RowMappers.ParameterBinder[] binders) {
+        String sql = query.value();
+        int fetchSize = query.fetchSize();
+        Class<?> returnType = method.getReturnType();
+        Result mode;
+        Class<?> elementType;
+        if (returnType == List.class || returnType == Optional.class || returnType == Stream.class) {
+            mode = returnType == List.class ? Result.LIST : returnType == Optional.class ? Result.OPTIONAL : Result.STREAM;
+            elementType = getElementType(method);
+        } else if (returnType != void.class) {
+            mode = Result.SINGLE;
+            elementType = returnType.isPrimitive() ? box(returnType) : returnType;
+            if (returnType.isPrimitive() && !RowMappers.isScalar(returnType))
+                throw new IllegalArgumentException("Query method " + method + " has an unsupported return type");
+        } else {
+            throw new IllegalArgumentException("Query method " + method + " must return a value");
+        }
+        RowMappers.check(elementType);
+
+        QueryPlan<?> plan = new QueryPlan<>(elementType);
+        boolean primitive = returnType.isPrimitive();
+        return args -> {
+            Connection connection = datasource.getConnection();
+            PreparedStatement statement = null;
+            ResultSet result = null;
+            try {
+                statement = prepare(connection, sql, binders, args);
+                if (fetchSize > 0)
+                    statement.setFetchSize(fetchSize);
+                result = statement.executeQuery();
+                RowMapper<?> mapper = plan.getMapper(result);
+                switch (mode) {
+                    case STREAM:
+                        Stream<?> stream = ResultSetSpliterator.stream(result, mapper, connection, statement, result);
+                        connection = null;
+                        return stream;
+                    case LIST:
+                        List<Object> list = new ArrayList<>();
+                        while (result.next()) {
+                            list.add(mapper.map(result));
+                        }
+                        return list;
+                    default:
+                        boolean found = result.next();
+                        Object value = found ? mapper.map(result) : null;
+                        if (mode == Result.OPTIONAL)
+                            return Optional.ofNullable(value);
+                        if (value == null && primitive)
+                            throw new SQLException("Query of " + method.getName() + (found ? " returned NULL" : " returned no rows"));
+                        return value;
+                }
+            } finally {
+                if (connection != null)
+                    ResultSetSpliterator.close(connection, statement, result);
+            }
+        };
+    }
+
+    private PreparedStatement prepare(Connection connection, String sql, RowMappers.ParameterBinder[] binders, Object[] args) throws SQLException {
+        PreparedStatement statement = prepareStatement(connection, sql);
+        try {
+            for (int i = 0; i < binders.length; i++) {
+                binders[i].bind(statement, i + 1, args[i]);
+            }
+        } catch (SQLException | RuntimeException e) {
+            statement.close();
+            throw e;
+        }
+        return statement;
+    }
+
+    private static Class<?> getElementType(Method method) {
+        Type type = method.getGenericReturnType();
+        if (type instanceof ParameterizedType) {
+            Type argument = ((ParameterizedType) type).getActualTypeArguments()[0];
+            if (argument instanceof Class)
+                return (Class<?>) argument;
+        }
+        throw new IllegalArgumentException("Query method " + method + " must declare the element type of its result");
+    }
+
+    private static Class<?> box(Class<?> type) {
+        if (type == int.class)
+            return Integer.class;
+        if (type == long.class)
+            return Long.class;
+        if (type == boolean.class)
+            return Boolean.class;
+        if (type == double.class)
+            return Double.class;
+        if (type == float.class)
+            return Float.class;
+        if (type == short.class)
+            return Short.class;
+        if (type == byte.class)
+            return Byte.class;
+        return type;
+    }
+
+    private enum Result {
+        SINGLE, OPTIONAL, LIST, STREAM
+    }
+
+    @FunctionalInterface
+    private interface Invoker {
+        Object invoke(Object[] args) throws SQLException;
+    }
+
+    /**
+     * The row mapper of a query, which is compiled for the columns of its first execution
+     */
+    private static final class QueryPlan<T> {
+        private final Class<T> type;
+        private volatile RowMapper<T> mapper;
+
+        private QueryPlan(Class<T> type) {
+            this.type = type;
+        }
+
+        private RowMapper<T> getMapper(ResultSet result) throws SQLException {
+            RowMapper<T> mapper = this.mapper;
+            if (mapper == null)
+                this.mapper = mapper = RowMappers.compile(type, result.getMetaData());
+            return mapper;
+        }
+    }
+
+    private static final class DaoHandler implements InvocationHandler {
+        private static final Object[] NO_ARGS = new Object[0];
+
+        private final Class<?> target;
+        private final Map<Method, Invoker> invokers;
+        private final Map<Method, MethodHandle> defaults;
+
+        private DaoHandler(Class<?> target, Map<Method, Invoker> invokers, Map<Method, MethodHandle> defaults) {
+            this.target = target;
+            this.invokers = invokers;
+            this.defaults = defaults;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Invoker invoker = invokers.get(method);
+            if (invoker != null)
+                return invoker.invoke(args == null ? NO_ARGS : args);
+            MethodHandle handle = defaults.get(method);
+            if (handle != null)
+                return handle.bindTo(proxy).invokeWithArguments(args == null ? NO_ARGS : args);
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "SqlDao(" + target.getName() + ")";
+            }
+            throw new UnsupportedOperationException(method.toString());
+        }
+    }
+}
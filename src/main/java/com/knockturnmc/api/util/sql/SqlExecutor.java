@@ -0,0 +1,256 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2016 Sven Olderaan, http://knockturnmc.com/
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE
+ */
+
+package com.knockturnmc.api.util.sql;
+
+import com.knockturnmc.api.util.LatencyHistogram;
+
+import java.io.Closeable;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded executor for blocking database work, which returns its results as {@link CompletableFuture}s.
+ * <p>
+ * At most the given amount of tasks is executed at the same time, usually the size of the connection pool,
+ * further tasks wait in a bounded queue and are rejected once it is full.
+ * Tasks are executed on virtual threads if the runtime supports them, otherwise on daemon platform threads.
+ * Results can be completed on a callback executor, for example the main thread of a server,
+ * so dependent stages never run on the database threads.
+ */
+public class SqlExecutor implements Closeable {
+
+    private static final AtomicInteger executorCounter = new AtomicInteger();
+
+    private final ThreadPoolExecutor executor;
+    private final boolean virtual;
+    private final LatencyHistogram waitTime = new LatencyHistogram();
+    private final LatencyHistogram executionTime = new LatencyHistogram();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * Creates a new executor
+     *
+     * @param threads       the maximum amount of tasks executed at the same time
+     * @param queueCapacity the maximum amount of tasks waiting for execution
+     */
+    public SqlExecutor(int threads, int queueCapacity) {
+        if (threads < 1 || queueCapacity < 1)
+            throw new IllegalArgumentException("threads and queueCapacity must be positive");
+        String prefix = "SqlExecutor-" + executorCounter.incrementAndGet() + "-";
+        ThreadFactory factory = createVirtualThreadFactory(prefix);
+        this.virtual = factory != null;
+        if (factory == null) {
+            AtomicInteger threadCounter = new AtomicInteger();
+            factory = runnable -> {
+                Thread thread = new Thread(runnable, prefix + threadCounter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            };
+        }
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queueCapacity), factory);
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Creates a factory of virtual threads through reflection, as they are only available since Java 21
+     */
+    private static ThreadFactory createVirtualThreadFactory(String prefix) {
+        try {
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderType.getMethod("name", String.class, long.class).invoke(builder, prefix, 1L);
+            return (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException | LinkageError | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Submits a task. The returned future is completed on the thread that executed the task.
+     *
+     * @param task the task
+     * @param <T>  the type of the result
+     * @return the result, which is completed exceptionally with a {@link RejectedExecutionException} if the queue is full
+     */
+    public <T> CompletableFuture<T> submit(Callable<T> task) {
+        return submit(task, null);
+    }
+
+    /**
+     * Submits a task. A task whose future is cancelled before it started is not executed.
+     *
+     * @param task             the task
+     * @param callbackExecutor the executor on which the returned future is completed,
+     *                         or {@code null} to complete it on the thread that executed the task
+     * @param <T>              the type of the result
+     * @return the result, which is completed exceptionally with a {@link RejectedExecutionException} if the queue is full
+     */
+    public <T> CompletableFuture<T> submit(Callable<T> task, Executor callbackExecutor) {
+        if (task == null)
+            throw new IllegalArgumentException("task can not be null");
+        CompletableFuture<T> future = new CompletableFuture<>();
+        long queued = System.nanoTime();
+        try {
+            executor.execute(() -> {
+                long start = System.nanoTime();
+                waitTime.record(start - queued);
+                if (future.isDone())
+                    return;
+                T result = null;
+                Throwable failure = null;
+                try {
+                    result = task.call();
+                    completed.increment();
+                } catch (Throwable e) {
+                    failed.increment();
+                    failure = e;
+                } finally {
+                    executionTime.record(System.nanoTime() - start);
+                }
+                complete(future, result, failure, callbackExecutor);
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    private static <T> void complete(CompletableFuture<T> future, T result, Throwable failure, Executor callbackExecutor) {
+        Runnable completion = () -> {
+            if (failure != null)
+                future.completeExceptionally(failure);
+            else
+                future.complete(result);
+        };
+        if (callbackExecutor == null) {
+            completion.run();
+            return;
+        }
+        try {
+            callbackExecutor.execute(completion);
+        } catch (RejectedExecutionException e) {
+            completion.run();
+        }
+    }
+
+    /**
+     * Checks whether tasks are executed on virtual threads
+     *
+     * @return true if virtual threads are used
+     */
+    public boolean isVirtual() {
+        return virtual;
+    }
+
+    /**
+     * Gets the maximum amount of tasks executed at the same time
+     *
+     * @return the amount of threads
+     */
+    public int getThreads() {
+        return executor.getMaximumPoolSize();
+    }
+
+    /**
+     * Gets the amount of tasks that are currently executed
+     *
+     * @return the amount of active tasks
+     */
+    public int getActiveTasks() {
+        return executor.getActiveCount();
+    }
+
+    /**
+     * Gets the amount of tasks waiting for execution
+     *
+     * @return the queue depth
+     */
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * Gets the time tasks waited in the queue until they were executed
+     *
+     * @return the wait times
+     */
+    public LatencyHistogram getWaitTime() {
+        return waitTime;
+    }
+
+    /**
+     * Gets the time it took to execute the tasks
+     *
+     * @return the execution times
+     */
+    public LatencyHistogram getExecutionTime() {
+        return executionTime;
+    }
+
+    /**
+     * Gets the amount of tasks that completed successfully
+     *
+     * @return the amount of completed tasks
+     */
+    public long getCompleted() {
+        return completed.sum();
+    }
+
+    /**
+     * Gets the amount of tasks that threw an exception
+     *
+     * @return the amount of failed tasks
+     */
+    public long getFailed() {
+        return failed.sum();
+    }
+
+    /**
+     * Gets the amount of tasks that were rejected because the queue was full
+     *
+     * @return the amount of rejected tasks
+     */
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    /**
+     * Shuts the executor down. Tasks that were already submitted are still executed.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+}
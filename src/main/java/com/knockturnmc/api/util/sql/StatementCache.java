@@ -0,0 +1,269 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2016 Sven Olderaan, http://knockturnmc.com/
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE
+ */
+
+package com.knockturnmc.api.util.sql;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded LRU cache of prepared statements of a single physical connection, keyed by their SQL.
+ * A cached statement is handed out to one user at a time, closing it clears its parameters, restores its settings
+ * and returns it to the cache. A statement whose settings can not be restored is closed instead.
+ */
+final class StatementCache {
+
+    private static final Set<String> RESTORED_SETTINGS = new HashSet<>(Arrays.asList(
+            "setFetchSize", "setFetchDirection", "setMaxRows", "setLargeMaxRows", "setMaxFieldSize", "setQueryTimeout"));
+    private static final Set<String> UNCACHEABLE_SETTINGS = new HashSet<>(Arrays.asList(
+            "setCursorName", "setEscapeProcessing", "setPoolable", "closeOnCompletion"));
+
+    private final Connection connection;
+    private final int maxSize;
+    private final Stats stats;
+    private final LinkedHashMap<String, CachedStatement> statements;
+    private boolean closed;
+
+    StatementCache(Connection connection, int maxSize, Stats stats) {
+        this.connection = connection;
+        this.maxSize = maxSize;
+        this.stats = stats;
+        this.statements = new LinkedHashMap<String, CachedStatement>(16, 0.75F, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedStatement> eldest) {
+                if (size() <= StatementCache.this.maxSize)
+                    return false;
+                stats.evictions.increment();
+                eldest.getValue().evict();
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Gets a cached statement or prepares and caches a new one
+     *
+     * @param owner the connection the statement reports as its connection
+     * @param sql   the sql
+     * @return the statement or {@code null} if the cached statement is in use, so an uncached statement has to be prepared
+     * @throws SQLException if the statement could not be prepared
+     */
+    synchronized PreparedStatement prepare(Connection owner, String sql) throws SQLException {
+        if (closed)
+            throw new SQLException("Connection is closed");
+        CachedStatement cached = statements.get(sql);
+        if (cached != null) {
+            if (cached.current != null) {
+                stats.misses.increment();
+                return null;
+            }
+            stats.hits.increment();
+        } else {
+            stats.misses.increment();
+            cached = new CachedStatement(sql, connection.prepareStatement(sql));
+            statements.put(sql, cached);
+        }
+        return cached.checkout(owner);
+    }
+
+    /**
+     * Returns all statements to the cache, invalidating the handles that were not closed
+     */
+    synchronized void releaseAll() {
+        for (CachedStatement statement : statements.values()) {
+            statement.release();
+        }
+    }
+
+    /**
+     * Closes all statements
+     */
+    void close() {
+        List<CachedStatement> closing;
+        synchronized (this) {
+            closed = true;
+            closing = new ArrayList<>(statements.values());
+            statements.clear();
+        }
+        for (CachedStatement statement : closing) {
+            statement.current = null;
+            statement.evict();
+        }
+    }
+
+    /**
+     * The counters of the statement caches of a pool
+     */
+    static final class Stats {
+        final LongAdder hits = new LongAdder();
+        final LongAdder misses = new LongAdder();
+        final LongAdder evictions = new LongAdder();
+    }
+
+    private final class CachedStatement {
+        private final String sql;
+        private final PreparedStatement statement;
+        private final int fetchSize;
+        private final int fetchDirection;
+        private final int maxRows;
+        private final int maxFieldSize;
+        private final int queryTimeout;
+        private Handle current;
+        private boolean evicted;
+        private boolean modified;
+        private boolean uncacheable;
+
+        private CachedStatement(String sql, PreparedStatement statement) throws SQLException {
+            this.sql = sql;
+            this.statement = statement;
+            try {
+                this.fetchSize = statement.getFetchSize();
+                this.fetchDirection = statement.getFetchDirection();
+                this.maxRows = statement.getMaxRows();
+                this.maxFieldSize = statement.getMaxFieldSize();
+                this.queryTimeout = statement.getQueryTimeout();
+            } catch (SQLException e) {
+                statement.close();
+                throw e;
+            }
+        }
+
+        private PreparedStatement checkout(Connection owner) {
+            current = new Handle(this, owner);
+            return (PreparedStatement) Proxy.newProxyInstance(StatementCache.class.getClassLoader(),
+                    new Class[]{PreparedStatement.class}, current);
+        }
+
+        private void release() {
+            if (current == null)
+                return;
+            current = null;
+            if (evicted) {
+                closeQuietly();
+                return;
+            }
+            if (uncacheable) {
+                discard();
+                return;
+            }
+            try {
+                statement.clearParameters();
+                statement.clearBatch();
+                if (modified) {
+                    // the next user has to get the statement with the settings it was prepared with,
+                    // max rows first as drivers may reject a fetch size above the current max rows
+                    statement.setMaxRows(maxRows);
+                    statement.setFetchSize(fetchSize);
+                    statement.setFetchDirection(fetchDirection);
+                    statement.setMaxFieldSize(maxFieldSize);
+                    statement.setQueryTimeout(queryTimeout);
+                    modified = false;
+                }
+            } catch (SQLException e) {
+                discard();
+            }
+        }
+
+        private void discard() {
+            statements.remove(sql, this);
+            evict();
+        }
+
+        private void evict() {
+            evicted = true;
+            if (current == null)
+                closeQuietly();
+        }
+
+        private void closeQuietly() {
+            try {
+                statement.close();
+            } catch (SQLException ignored) {
+            }
+        }
+    }
+
+    private final class Handle implements InvocationHandler {
+        private final CachedStatement cached;
+        private final Connection owner;
+
+        private Handle(CachedStatement cached, Connection owner) {
+            this.cached = cached;
+            this.owner = owner;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    synchronized (StatementCache.this) {
+                        if (cached.current == this)
+                            cached.release();
+                    }
+                    return null;
+                case "isClosed":
+                    return !isValid();
+                case "getConnection":
+                    return owner;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Cached" + cached.statement;
+            }
+            synchronized (StatementCache.this) {
+                if (cached.current != this)
+                    throw new SQLException("Statement is closed");
+                if (RESTORED_SETTINGS.contains(method.getName()))
+                    cached.modified = true;
+                else if (UNCACHEABLE_SETTINGS.contains(method.getName()))
+                    cached.uncacheable = true;
+            }
+            try {
+                return method.invoke(cached.statement, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+
+        private boolean isValid() {
+            synchronized (StatementCache.this) {
+                return cached.current == this;
+            }
+        }
+    }
+}
@@ -0,0 +1,487 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2016 Sven Olderaan, http://knockturnmc.com/
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE
+ */
+
+package com.knockturnmc.api.util.sql;
+
+import com.knockturnmc.api.util.LatencyHistogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Executes write statements asynchronously in JDBC batches on a dedicated thread.
+ * <p>
+ * Writes are queued until {@code maxBatchSize} writes are pending or the oldest pending write waited for the flush interval.
+ * A pending write is replaced by a later write with the same key and statement, so only the latest state is written.
+ * If another statement with the same key was queued in between, the pending write is removed and the later write
+ * is queued at the end instead, so writes of the same key are always executed in the order they were submitted.
+ * All pending writes are executed in a single transaction, consecutive writes of the same statement in batches.
+ * If the queue is full, {@link #submit(Object, String, Object...)} blocks and {@link #offer(Object, String, Object...)} fails.
+ * <p>
+ * Closing the queue writes all pending writes. By default, the queue is also closed when the JVM shuts down.
+ * If the flush thread is interrupted, it writes all pending writes and stops, the queue then rejects new writes like a closed queue.
+ * Failed batches are rolled back, logged and counted, they are not retried.
+ */
+public class WriteBehindQueue implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(WriteBehindQueue.class);
+    private static final AtomicInteger queueCounter = new AtomicInteger();
+
+    private final SqlDatasource datasource;
+    private final int capacity;
+    private final int maxBatchSize;
+    private final long flushInterval;
+    private final Thread flusher;
+    private final Thread shutdownHook;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notFull = lock.newCondition();
+    private final Condition flushable = lock.newCondition();
+    private final Condition flushed = lock.newCondition();
+    private final LinkedHashMap<Object, Write> pending = new LinkedHashMap<>();
+    private final Map<Object, Write> latest = new HashMap<>();
+    private long firstPending;
+    private long submitted;
+    private long completed;
+    private boolean flushRequested;
+    private boolean closed;
+    private boolean stopped;
+
+    private final LongAdder writes = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LatencyHistogram flushTime = new LatencyHistogram();
+    private final long created = System.nanoTime();
+
+    /**
+     * Creates and starts a new queue
+     *
+     * @param datasource    the datasource to write to
+     * @param capacity      the maximum amount of pending writes
+     * @param maxBatchSize  the amount of pending writes that triggers a flush and the maximum size of a JDBC batch
+     * @param flushInterval the maximum time a write is pending
+     * @param unit          the unit of the interval
+     */
+    public WriteBehindQueue(SqlDatasource datasource, int capacity, int maxBatchSize, long flushInterval, TimeUnit unit) {
+        if (datasource == null)
+            throw new IllegalArgumentException("datasource can not be null");
+        if (capacity < 1 || maxBatchSize < 1 || flushInterval < 1)
+            throw new IllegalArgumentException("capacity, batch size and interval must be positive");
+        this.datasource = datasource;
+        this.capacity = capacity;
+        this.maxBatchSize = maxBatchSize;
+        this.flushInterval = unit.toNanos(flushInterval);
+
+        String name = "WriteBehind-" + queueCounter.incrementAndGet();
+        this.flusher = new Thread(this::run, name);
+        flusher.setDaemon(true);
+        flusher.start();
+        this.shutdownHook = new Thread(this::close, name + "-shutdown");
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+    }
+
+    /**
+     * Queues a write, waiting while the queue is full
+     *
+     * @param key    the key of the write or {@code null} to never replace it. A pending write with the same key
+     *               and statement is replaced, in place if it is the latest pending write of the key
+     * @param sql    the statement
+     * @param params the parameters of the statement
+     * @throws InterruptedException  if the thread was interrupted while waiting
+     * @throws IllegalStateException if the queue is closed or its flush thread stopped
+     */
+    public void submit(Object key, String sql, Object... params) throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (!tryEnqueue(key, sql, params)) {
+                notFull.await();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Queues a write if the queue is not full
+     *
+     * @param key    the key of the write or {@code null} to never replace it
+     * @param sql    the statement
+     * @param params the parameters of the statement
+     * @return false if the queue is full
+     * @throws IllegalStateException if the queue is closed or its flush thread stopped
+     * @see #submit(Object, String, Object...)
+     */
+    public boolean offer(Object key, String sql, Object... params) {
+        lock.lock();
+        try {
+            return tryEnqueue(key, sql, params);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean tryEnqueue(Object key, String sql, Object[] params) {
+        if (closed)
+            throw new IllegalStateException("Queue is closed");
+        if (stopped)
+            throw new IllegalStateException("Queue is no longer flushed, its flush thread stopped");
+        Write write = new Write(sql, params);
+        Object id = key != null ? new WriteKey(key, sql) : write;
+        Write previous = pending.get(id);
+        if (previous != null) {
+            coalesced.increment();
+            submitted++;
+            if (latest.get(key) == previous) {
+                previous.params = params;
+            } else {
+                // another statement of the key is pending after the previous write, so it has to run first
+                pending.remove(id);
+                pending.put(id, write);
+                latest.put(key, write);
+            }
+            return true;
+        }
+        if (pending.size() >= capacity)
+            return false;
+        if (pending.isEmpty())
+            firstPending = System.nanoTime();
+        pending.put(id, write);
+        if (key != null)
+            latest.put(key, write);
+        submitted++;
+        if (pending.size() >= maxBatchSize)
+            flushable.signal();
+        return true;
+    }
+
+    /**
+     * Writes all pending writes and waits until they were written
+     *
+     * @throws InterruptedException if the thread was interrupted while waiting
+     */
+    public void flush() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            long target = submitted;
+            flushRequested = true;
+            flushable.signal();
+            while (completed < target && !stopped) {
+                flushed.await(100, TimeUnit.MILLISECONDS);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stops accepting writes, writes all pending writes and stops the flush thread
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            if (closed)
+                return;
+            closed = true;
+            flushable.signal();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        if (Thread.currentThread() != shutdownHook) {
+            try {
+                Runtime.getRuntime().removeShutdownHook(shutdownHook);
+            } catch (IllegalStateException ignored) {
+                // the JVM is already shutting down
+            }
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        // the flusher stops early if it was interrupted, so writes queued afterwards are written here
+        List<Write> drained;
+        lock.lock();
+        try {
+            drained = pending.isEmpty() ? null : drain();
+            completed = submitted;
+        } finally {
+            lock.unlock();
+        }
+        if (drained != null)
+            write(drained);
+    }
+
+    private void run() {
+        try {
+            flushLoop();
+        } finally {
+            lock.lock();
+            try {
+                // nothing writes the queue anymore, waiting writers and flushes must not wait forever
+                stopped = true;
+                notFull.signalAll();
+                flushed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void flushLoop() {
+        boolean interrupted = false;
+        while (true) {
+            List<Write> drained;
+            long sequence;
+            lock.lock();
+            try {
+                try {
+                    while (!closed && !interrupted && !flushRequested && pending.size() < maxBatchSize) {
+                        long wait = pending.isEmpty() ? Long.MAX_VALUE : firstPending + flushInterval - System.nanoTime();
+                        if (wait <= 0)
+                            break;
+                        flushable.awaitNanos(wait);
+                    }
+                } catch (InterruptedException e) {
+                    logger.warn("Write behind flusher was interrupted, writing pending writes and rejecting new writes");
+                    interrupted = true;
+                }
+                flushRequested = false;
+                if (pending.isEmpty()) {
+                    completed = submitted;
+                    flushed.signalAll();
+                    if (closed || interrupted)
+                        break;
+                    continue;
+                }
+                sequence = submitted;
+                drained = drain();
+            } finally {
+                lock.unlock();
+            }
+
+            write(drained);
+
+            lock.lock();
+            try {
+                completed = sequence;
+                flushed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+    }
+
+    /**
+     * Removes all pending writes, the lock has to be held
+     */
+    private List<Write> drain() {
+        List<Write> drained = new ArrayList<>(pending.values());
+        pending.clear();
+        latest.clear();
+        notFull.signalAll();
+        return drained;
+    }
+
+    private void write(List<Write> drained) {
+        long start = System.nanoTime();
+        try (Connection connection = datasource.getConnection()) {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try {
+                Iterator<Write> iterator = drained.iterator();
+                Write next = iterator.next();
+                while (next != null) {
+                    String sql = next.sql;
+                    PreparedStatement cached = ConnectionPool.prepareCached(connection, sql);
+                    try (PreparedStatement statement = cached != null ? cached : connection.prepareStatement(sql)) {
+                        int size = 0;
+                        while (next != null && next.sql.equals(sql)) {
+                            Object[] params = next.params;
+                            for (int i = 0; i < params.length; i++) {
+                                RowMappers.bind(statement, i + 1, params[i]);
+                            }
+                            statement.addBatch();
+                            next = iterator.hasNext() ? iterator.next() : null;
+                            if (++size == maxBatchSize) {
+                                statement.executeBatch();
+                                batches.increment();
+                                size = 0;
+                            }
+                        }
+                        if (size > 0) {
+                            statement.executeBatch();
+                            batches.increment();
+                        }
+                    }
+                }
+                connection.commit();
+                writes.add(drained.size());
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        } catch (SQLException | RuntimeException e) {
+            failures.add(drained.size());
+            logger.error("Failed to write {} pending writes", drained.size(), e);
+        }
+        flushTime.record(System.nanoTime() - start);
+    }
+
+    /**
+     * Gets the amount of pending writes
+     *
+     * @return the amount of pending writes
+     */
+    public int getQueueSize() {
+        lock.lock();
+        try {
+            return pending.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the amount of successfully written writes
+     *
+     * @return the amount of writes
+     */
+    public long getWrites() {
+        return writes.sum();
+    }
+
+    /**
+     * Gets the amount of executed JDBC batches
+     *
+     * @return the amount of batches
+     */
+    public long getBatches() {
+        return batches.sum();
+    }
+
+    /**
+     * Gets the average amount of writes per executed JDBC batch
+     *
+     * @return the average batch size
+     */
+    public double getAverageBatchSize() {
+        long batches = getBatches();
+        return batches == 0 ? 0 : (double) getWrites() / batches;
+    }
+
+    /**
+     * Gets the amount of writes that replaced a pending write with the same key
+     *
+     * @return the amount of coalesced writes
+     */
+    public long getCoalesced() {
+        return coalesced.sum();
+    }
+
+    /**
+     * Gets the amount of writes that failed to be written
+     *
+     * @return the amount of failed writes
+     */
+    public long getFailures() {
+        return failures.sum();
+    }
+
+    /**
+     * Gets the average amount of writes per second since the queue was created
+     *
+     * @return the throughput
+     */
+    public double getThroughput() {
+        double seconds = (System.nanoTime() - created) / 1e9;
+        return seconds <= 0 ? 0 : getWrites() / seconds;
+    }
+
+    /**
+     * Gets the time it took to write the pending writes, including failed flushes
+     *
+     * @return the flush times
+     */
+    public LatencyHistogram getFlushTime() {
+        return flushTime;
+    }
+
+    private static final class Write {
+        private final String sql;
+        private Object[] params;
+
+        private Write(String sql, Object[] params) {
+            this.sql = sql;
+            this.params = params;
+        }
+    }
+
+    private static final class WriteKey {
+        private final Object key;
+        private final String sql;
+
+        private WriteKey(Object key, String sql) {
+            this.key = key;
+            this.sql = sql;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o)
+                return true;
+            if (!(o instanceof WriteKey))
+                return false;
+            WriteKey other = (WriteKey) o;
+            return key.equals(other.key) && sql.equals(other.sql);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(key, sql);
+        }
+    }
+}
@@ -0,0 +1,211 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2016 Sven Olderaan, http://knockturnmc.com/
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE
+ */
+
+package com.knockturnmc.api.util;
+
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class ConfigurationUtilsTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testStoreOnlyMissingDefaults() throws Exception {
+        File datafolder = folder.newFolder();
+        File file = new File(datafolder, "test.properties");
+        write(file, "name=first\n");
+
+        TestProperties properties = ConfigurationUtils.loadConfiguration(getClass().getClassLoader(), "test.properties", datafolder, TestProperties.class);
+        assertEquals("first", properties.name);
+        String content = new String(Files.readAllBytes(file.toPath()), StandardCharsets.ISO_8859_1);
+        assertTrue(content.contains("count="));
+
+        assertTrue(file.setLastModified(1000));
+        ConfigurationUtils.loadConfiguration(getClass().getClassLoader(), "test.properties", datafolder, TestProperties.class);
+        assertEquals(1000, file.lastModified());
+        assertEquals(1, datafolder.list().length);
+    }
+
+    @Test
+    public void testWriteKeepsPermissions() throws Exception {
+        File datafolder = folder.newFolder();
+        File file = new File(datafolder, "test.properties");
+        write(file, "name=first\n");
+        Assume.assumeNotNull(Files.getFileAttributeView(file.toPath(), PosixFileAttributeView.class));
+        Set<PosixFilePermission> permissions = PosixFilePermissions.fromString("rw-r-----");
+        Files.setPosixFilePermissions(file.toPath(), permissions);
+
+        ConfigurationUtils.loadConfiguration(getClass().getClassLoader(), "test.properties", datafolder, TestProperties.class);
+        String content = new String(Files.readAllBytes(file.toPath()), StandardCharsets.ISO_8859_1);
+        assertTrue(content.contains("count="));
+        assertEquals(permissions, Files.getPosixFilePermissions(file.toPath()));
+    }
+
+    @Test
+    public void testLoadConfigurations() throws Exception {
+        File datafolder = folder.newFolder();
+        List<Tuple<String, Class<? extends NamedProperties>>> configurations = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            write(new File(datafolder, i + ".properties"), "name=config" + i + "\ncount=" + i + "\n");
+            configurations.add(Tuple.getTuple(i + ".properties", TestProperties.class));
+        }
+
+        Map<String, NamedProperties> loaded = ConfigurationUtils.loadConfigurations(getClass().getClassLoader(), datafolder, configurations, 4);
+        assertEquals(20, loaded.size());
+        for (int i = 0; i < 20; i++) {
+            TestProperties properties = (TestProperties) loaded.get(i + ".properties");
+            assertEquals("config" + i, properties.name);
+            assertEquals(i, properties.count);
+        }
+
+        write(new File(datafolder, "3.properties"), "count=invalid\n");
+        try {
+            ConfigurationUtils.loadConfigurations(getClass().getClassLoader(), datafolder, configurations, 4);
+            fail("Expected the invalid configuration to fail");
+        } catch (ConfigurationLoadException e) {
+            assertEquals(Collections.singleton("3.properties"), e.getErrors().keySet());
+            assertEquals(19, e.getLoaded().size());
+        }
+    }
+
+    @Test
+    public void testDuplicateConfigurations() throws Exception {
+        File datafolder = folder.newFolder();
+        List<Tuple<String, Class<? extends NamedProperties>>> configurations = new ArrayList<>();
+        configurations.add(Tuple.getTuple("first.properties", TestProperties.class));
+        configurations.add(Tuple.getTuple("second.properties", TestProperties.class));
+        configurations.add(Tuple.getTuple("first.properties", TestProperties.class));
+
+        try {
+            ConfigurationUtils.loadConfigurations(getClass().getClassLoader(), datafolder, configurations, 4);
+            fail("Expected the duplicate configuration to be rejected");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("first.properties"));
+        }
+        assertEquals(0, datafolder.list().length);
+    }
+
+    @Test
+    public void testCachedConfiguration() throws Exception {
+        File datafolder = folder.newFolder();
+        File file = new File(datafolder, "test.properties");
+        write(file, "name=cached\ncount=42\nunit=DAYS\n");
+
+        TestProperties loaded = ConfigurationUtils.loadCachedConfiguration(getClass().getClassLoader(), "test.properties", datafolder, TestProperties.class);
+        assertTrue(ConfigurationCache.getSidecar(file).isFile());
+
+        TestProperties cached = ConfigurationCache.read(file, TestProperties.class);
+        assertNotNull(cached);
+        assertEquals(loaded.name, cached.name);
+        assertEquals(loaded.count, cached.count);
+        assertEquals(TimeUnit.DAYS, cached.unit);
+        assertEquals(loaded, cached);
+        assertEquals("42", cached.getSnapshot().getProperty("count"));
+
+        write(file, "name=changed\ncount=43\nunit=DAYS\n");
+        assertNull(ConfigurationCache.read(file, TestProperties.class));
+        TestProperties reloaded = ConfigurationUtils.loadCachedConfiguration(getClass().getClassLoader(), "test.properties", datafolder, TestProperties.class);
+        assertEquals("changed", reloaded.name);
+        assertEquals(43, reloaded.count);
+    }
+
+    @Test
+    public void testWatchConfiguration() throws Exception {
+        File datafolder = folder.newFolder();
+        File file = new File(datafolder, "test.properties");
+        write(file, "name=first\ncount=1\n");
+
+        try (WatchedConfiguration<TestProperties> watched = ConfigurationUtils.watchConfiguration(getClass().getClassLoader(), "test.properties", datafolder, TestProperties.class)) {
+            TestProperties initial = watched.get();
+            assertEquals("first", initial.name);
+            assertEquals(1, initial.count);
+
+            BlockingQueue<Set<String>> changes = new ArrayBlockingQueue<>(10);
+            watched.addListener((configuration, changedKeys) -> changes.add(changedKeys));
+
+            write(file, "name=first\ncount=2\n");
+
+            Set<String> changed = changes.poll(10, TimeUnit.SECONDS);
+            assertEquals(Collections.singleton("count"), changed);
+            assertEquals(2, watched.get().count);
+            assertEquals(1, initial.count);
+        }
+    }
+
+    @Test
+    public void testWatcherSurvivesFailedReload() throws Exception {
+        File datafolder = folder.newFolder();
+        File broken = new File(datafolder, "broken.properties");
+        File file = new File(datafolder, "test.properties");
+        write(broken, "name=broken\n");
+        write(file, "name=first\ncount=1\n");
+
+        TestProperties initial = ConfigurationUtils.loadConfiguration(getClass().getClassLoader(), "broken.properties", datafolder, TestProperties.class);
+        WatchedConfiguration<TestProperties> failing = new WatchedConfiguration<>(broken, initial, () -> null);
+        ConfigurationWatcher.getInstance().register(failing);
+        try (WatchedConfiguration<TestProperties> watched = ConfigurationUtils.watchConfiguration(getClass().getClassLoader(), "test.properties", datafolder, TestProperties.class)) {
+            BlockingQueue<Set<String>> changes = new ArrayBlockingQueue<>(10);
+            watched.addListener((configuration, changedKeys) -> changes.add(changedKeys));
+
+            write(broken, "name=changed\n");
+            Thread.sleep(500);
+            write(file, "name=first\ncount=2\n");
+
+            assertEquals(Collections.singleton("count"), changes.poll(10, TimeUnit.SECONDS));
+        } finally {
+            failing.close();
+        }
+    }
+
+    private static void write(File file, String content) throws Exception {
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    static class TestProperties extends NamedProperties {
+        @Property(value = "name")
+        String name;
+
+        @Property(value = "count")
+        int count;
+
+        @Property(value = "unit", type = TimeUnit.class, defaultvalue = "SECONDS")
+        TimeUnit unit;
+    }
+}
@@ -28,6 +28,8 @@ import org.junit.Test;
 import java.io.ByteArrayInputStream;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.*;
 import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.*;
@@ -51,6 +53,194 @@ public class NamedPropertiesTest {
         assertEquals(31231232L, properties.someLong);
     }
 
+    @Test
+    public void testInvalidInteger() throws Exception {
+        TestProperties properties = new TestProperties();
+        InputStream stream = new ByteArrayInputStream("test=abc".getBytes(StandardCharsets.UTF_8));
+
+        try {
+            properties.load(stream);
+            fail("Expected invalid integer to be rejected");
+        } catch (RuntimeException e) {
+            assertEquals("Invalid integer for field test=abc", e.getCause().getMessage());
+        }
+    }
+
+    @Test
+    public void testSnapshot() throws Exception {
+        TestProperties properties = new TestProperties();
+        StringBuilder sb = new StringBuilder("test=123\ntime.unit=DAYS\n");
+        for (int i = 0; i < 100; i++) {
+            sb.append("extra.").append(i).append('=').append(i).append('\n');
+        }
+        properties.load(new ByteArrayInputStream(sb.toString().getBytes(StandardCharsets.UTF_8)));
+
+        PropertiesSnapshot snapshot = properties.getSnapshot();
+        assertEquals(properties.size(), snapshot.size());
+        assertEquals("123", snapshot.getProperty("test"));
+        assertEquals("-69", snapshot.getProperty("defaulttest"));
+        for (int i = 0; i < 100; i++) {
+            assertEquals(String.valueOf(i), snapshot.getProperty("extra." + i));
+        }
+        assertNull(snapshot.getProperty("missing"));
+        assertEquals("fallback", snapshot.getProperty("missing", "fallback"));
+
+        properties.setProperty("test", "456");
+        assertEquals("123", properties.getSnapshot().getProperty("test"));
+    }
+
+    @Test
+    public void testConverters() throws Exception {
+        PropertyConverters.register(Point.class, value -> {
+            String[] parts = value.split(":");
+            return new Point(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]));
+        });
+
+        ConverterProperties properties = new ConverterProperties();
+        String testString = "double=1.5\nboxed=7\nduration=30s\niso=PT2H\n"
+                + "uuid=069a79f444e94726a5befca90e38aaf5\nlist=a, b ,c\nunits=SECONDS,DAYS\n"
+                + "array=1,2,3\npoint=4:5";
+        properties.load(new ByteArrayInputStream(testString.getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals(1.5, properties.doubleValue, 0);
+        assertEquals(Integer.valueOf(7), properties.boxed);
+        assertNull(properties.missingBoxed);
+        assertEquals(Duration.ofSeconds(30), properties.duration);
+        assertEquals(Duration.ofHours(2), properties.iso);
+        assertEquals(UUID.fromString("069a79f4-44e9-4726-a5be-fca90e38aaf5"), properties.uuid);
+        assertEquals(Arrays.asList("a", "b", "c"), properties.list);
+        assertEquals(new LinkedHashSet<>(Arrays.asList(TimeUnit.SECONDS, TimeUnit.DAYS)), properties.units);
+        assertArrayEquals(new int[]{1, 2, 3}, properties.array);
+        assertEquals(0, properties.emptyArray.length);
+        assertEquals(4, properties.point.x);
+        assertEquals(5, properties.point.y);
+    }
+
+    @Test
+    public void testFinalField() throws Exception {
+        FinalProperties properties = new FinalProperties();
+        properties.load(new ByteArrayInputStream("name=changed\ncount=7".getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals("changed", properties.name);
+        assertEquals(7, properties.count);
+    }
+
+    @Test
+    public void testStaticFinalField() throws Exception {
+        try {
+            new StaticFinalProperties().load(new ByteArrayInputStream(new byte[0]));
+            fail("Expected the static final field to be rejected");
+        } catch (RuntimeException e) {
+            assertTrue(e.getMessage().contains("static final field name"));
+        }
+    }
+
+    @Test
+    public void testGeneratedBinder() throws Exception {
+        assertFalse(PropertyBinder.of(GeneratedProperties.class) instanceof PropertyBinder);
+        assertTrue(PropertyBinder.of(TestProperties.class) instanceof PropertyBinder);
+
+        GeneratedProperties properties = new GeneratedProperties();
+        PropertyConverters.register(Mode.class, value -> value.isEmpty() ? null : Mode.valueOf(value.toUpperCase(Locale.ROOT)));
+        InputStream stream = new ByteArrayInputStream("test=123\ntime.unit=DAYS\nmode=on".getBytes(StandardCharsets.UTF_8));
+        properties.load(stream);
+
+        assertEquals(123, properties.test);
+        assertEquals(-69, properties.defaulttest);
+        assertEquals("-69", properties.getProperty("defaulttest"));
+        assertEquals("quoted \"value\"", properties.test2);
+        assertEquals(TimeUnit.DAYS, properties.timeUnit);
+        assertEquals(31231232L, properties.someLong);
+        assertEquals(Mode.ON, properties.mode);
+    }
+
+    enum Mode {
+        ON, OFF
+    }
+
+    static class GeneratedProperties extends NamedProperties {
+        @Property(value = "test")
+        int test;
+
+        @Property(value = "defaulttest", defaultvalue = "-69")
+        int defaulttest;
+
+        @Property(value = "test.2", defaultvalue = "quoted \"value\"")
+        String test2;
+
+        @Property(value = "time.unit", type = TimeUnit.class)
+        TimeUnit timeUnit;
+
+        @Property(value = "some.long", defaultvalue = "31231232")
+        long someLong;
+
+        @Property(value = "mode", type = Mode.class)
+        Mode mode;
+    }
+
+    private static class Point {
+        private final int x;
+        private final int y;
+
+        private Point(int x, int y) {
+            this.x = x;
+            this.y = y;
+        }
+    }
+
+    private static class ConverterProperties extends NamedProperties {
+        @Property(value = "double")
+        double doubleValue;
+
+        @Property(value = "boxed")
+        Integer boxed;
+
+        @Property(value = "missing.boxed")
+        Integer missingBoxed;
+
+        @Property(value = "duration")
+        Duration duration;
+
+        @Property(value = "iso")
+        Duration iso;
+
+        @Property(value = "uuid")
+        UUID uuid;
+
+        @Property(value = "list")
+        List<String> list;
+
+        @Property(value = "units")
+        Set<TimeUnit> units;
+
+        @Property(value = "array")
+        int[] array;
+
+        @Property(value = "empty.array")
+        long[] emptyArray;
+
+        @Property(value = "point")
+        Point point;
+    }
+
+    private static class FinalProperties extends NamedProperties {
+        @Property(value = "name")
+        final String name;
+
+        @Property(value = "count", defaultvalue = "1")
+        final int count;
+
+        private FinalProperties() {
+            this.name = "initial";
+            this.count = 0;
+        }
+    }
+
+    private static class StaticFinalProperties extends NamedProperties {
+        @Property(value = "name")
+        static final String name = null;
+    }
+
     private static class TestProperties extends NamedProperties {
         @Property(value = "test")
         int test;
@@ -0,0 +1,544 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2016 Sven Olderaan, http://knockturnmc.com/
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE
+ */
+
+package com.knockturnmc.api.util;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipException;
+
+import static org.junit.Assert.*;
+
+public class RestClientTest {
+
+    private HttpServer server;
+    private String base;
+    private final AtomicInteger concurrent = new AtomicInteger();
+    private final AtomicInteger maxConcurrent = new AtomicInteger();
+    private final AtomicInteger stalls = new AtomicInteger();
+    private final AtomicInteger failures = new AtomicInteger();
+
+    @Before
+    public void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/hello", exchange -> respond(exchange, 200, "{\"hello\":\"world\"}"));
+        server.createContext("/echo", exchange -> respond(exchange, 200, IOUtils.toString(exchange.getRequestBody(), StandardCharsets.UTF_8)));
+        server.createContext("/missing", exchange -> respond(exchange, 404, "not found"));
+        server.createContext("/slow", exchange -> {
+            int current = concurrent.incrementAndGet();
+            maxConcurrent.accumulateAndGet(current, Math::max);
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            concurrent.decrementAndGet();
+            respond(exchange, 200, "slow");
+        });
+        server.createContext("/stall", exchange -> {
+            if (stalls.getAndIncrement() == 0) {
+                try {
+                    Thread.sleep(2000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            respond(exchange, 200, "hedged");
+        });
+        AtomicInteger coalescedStalls = new AtomicInteger();
+        server.createContext("/stall-coalesced", exchange -> {
+            if (coalescedStalls.getAndIncrement() == 0) {
+                try {
+                    Thread.sleep(2000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            respond(exchange, 200, "hedged");
+        });
+        server.createContext("/flaky", exchange -> respond(exchange, failures.getAndIncrement() < 2 ? 503 : 200, "flaky"));
+        server.createContext("/broken", exchange -> {
+            failures.incrementAndGet();
+            respond(exchange, 500, "broken");
+        });
+        server.createContext("/user", exchange -> respond(exchange, 200,
+                "{\"name\": \"Sven \\\"O\\\" \\u00e9\", \"age\": 42, \"admin\": true, \"unit\": \"MINUTES\","
+                        + " \"nested\": {\"a\": [1, {\"b\": \"}\"}]}, \"score\": -1.5e2, \"missing\": null,"
+                        + " \"tags\": [\"a\", \"b\"], \"scores\": [1, 2], \"matrix\": [[1], [\"]\"]]}"));
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+        base = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    public void testStreaming() throws Exception {
+        String body = "{\n  \"name\": \"M\u00fcller \u2603\"\n}\n";
+        server.createContext("/utf8", exchange -> respond(exchange, 200, body));
+        server.createContext("/latin1", exchange -> {
+            byte[] bytes = "caf\u00e9".getBytes(StandardCharsets.ISO_8859_1);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=ISO-8859-1");
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        });
+        RestClient client = new RestClient(ContentType.JSON);
+
+        assertEquals(body, client.doGet(base + "/utf8"));
+        assertEquals("caf\u00e9", client.doGet(base + "/latin1"));
+
+        ByteArrayOutputStream chunks = new ByteArrayOutputStream();
+        client.doGet(base + "/utf8", chunk -> {
+            while (chunk.hasRemaining()) {
+                chunks.write(chunk.get());
+            }
+        });
+        assertEquals(body, new String(chunks.toByteArray(), StandardCharsets.UTF_8));
+
+        try (RestResponse response = client.openGet(base + "/utf8")) {
+            assertEquals(200, response.getStatus());
+            assertEquals(body.getBytes(StandardCharsets.UTF_8).length, response.getContentLength());
+            assertEquals(StandardCharsets.UTF_8, response.getCharset());
+            assertEquals(body, IOUtils.toString(response.getReader()));
+        }
+    }
+
+    @Test
+    public void testCache() throws Exception {
+        AtomicInteger fresh = new AtomicInteger();
+        AtomicInteger validated = new AtomicInteger();
+        server.createContext("/fresh", exchange -> {
+            fresh.incrementAndGet();
+            exchange.getResponseHeaders().set("Cache-Control", "max-age=60");
+            respond(exchange, 200, exchange.getRequestHeaders().getFirst("Accept"));
+        });
+        server.createContext("/validated", exchange -> {
+            validated.incrementAndGet();
+            exchange.getResponseHeaders().set("ETag", "\"v1\"");
+            exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+            if ("\"v1\"".equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                exchange.sendResponseHeaders(304, -1);
+                exchange.close();
+            } else {
+                respond(exchange, 200, "validated");
+            }
+        });
+
+        RestCache cache = new RestCache(1024);
+        RestClient json = new RestClient(ContentType.JSON);
+        RestClient xml = new RestClient(ContentType.XML);
+        json.setCache(cache);
+        xml.setCache(cache);
+
+        assertEquals("application/json", json.doGet(base + "/fresh"));
+        assertEquals("application/json", json.doGet(base + "/fresh"));
+        assertEquals("application/xml", xml.doGet(base + "/fresh"));
+        assertEquals(2, fresh.get());
+
+        assertEquals("validated", json.doGet(base + "/validated"));
+        assertEquals("validated", json.doGet(base + "/validated"));
+        assertEquals(2, validated.get());
+
+        assertEquals(1, cache.getHits());
+        assertEquals(3, cache.getMisses());
+        assertEquals(1, cache.getRevalidations());
+
+        RestCache small = new RestCache(20);
+        json.setCache(small);
+        json.doGet(base + "/fresh");
+        json.doGet(base + "/validated");
+        assertEquals(1, small.getEvictions());
+        assertEquals("validated".length(), small.getSize());
+    }
+
+    @Test
+    public void testCoalescing() throws Exception {
+        AtomicInteger requests = new AtomicInteger();
+        server.createContext("/join", exchange -> {
+            requests.incrementAndGet();
+            try {
+                Thread.sleep(300);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            respond(exchange, 200, "profile");
+        });
+
+        RestClient client = new RestClient(ContentType.JSON);
+        client.setCoalescing(true);
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<String>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return client.doGet(base + "/join");
+                }));
+            }
+            start.countDown();
+            for (Future<String> future : futures) {
+                assertEquals("profile", future.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(1, requests.get());
+
+        client.setHeader("Authorization", "other");
+        assertEquals("profile", client.doGet(base + "/join"));
+        assertEquals(2, requests.get());
+
+        // identical requests of different clients are not coalesced
+        RestClient other = new RestClient(ContentType.JSON);
+        other.setCoalescing(true);
+        other.setHeader("Authorization", "other");
+        CompletableFuture<String> first = CompletableFuture.supplyAsync(() -> get(client, base + "/join"));
+        CompletableFuture<String> second = CompletableFuture.supplyAsync(() -> get(other, base + "/join"));
+        assertEquals("profile", first.get(5, TimeUnit.SECONDS));
+        assertEquals("profile", second.get(5, TimeUnit.SECONDS));
+        assertEquals(4, requests.get());
+
+        server.createContext("/gone", exchange -> {
+            try {
+                Thread.sleep(300);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            respond(exchange, 404, "gone");
+        });
+        ExecutorService failing = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<String>> futures = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                futures.add(failing.submit(() -> client.doGet(base + "/gone")));
+            }
+            for (Future<String> future : futures) {
+                try {
+                    future.get(5, TimeUnit.SECONDS);
+                    fail("Expected a 404");
+                } catch (ExecutionException e) {
+                    assertTrue(e.getCause() instanceof HttpStatusException);
+                    assertEquals(404, ((HttpStatusException) e.getCause()).getStatus());
+                }
+            }
+        } finally {
+            failing.shutdown();
+        }
+    }
+
+    private static String get(RestClient client, String path) {
+        try {
+            return client.doGet(path);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Test
+    public void testCompression() throws Exception {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            sb.append("{\"player\":").append(i).append(",\"kills\":0}\n");
+        }
+        String payload = sb.toString();
+        server.createContext("/gzip", exchange -> {
+            assertEquals("gzip, deflate", exchange.getRequestHeaders().getFirst("Accept-Encoding"));
+            InputStream in = exchange.getRequestBody();
+            if ("gzip".equals(exchange.getRequestHeaders().getFirst("Content-Encoding")))
+                in = new GZIPInputStream(in);
+            String body = IOUtils.toString(in, StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream out = new GZIPOutputStream(exchange.getResponseBody())) {
+                out.write((body.isEmpty() ? payload : body).getBytes(StandardCharsets.UTF_8));
+            }
+        });
+        server.createContext("/deflate", exchange -> {
+            exchange.getResponseHeaders().set("Content-Encoding", "deflate");
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream out = new DeflaterOutputStream(exchange.getResponseBody())) {
+                out.write(payload.getBytes(StandardCharsets.UTF_8));
+            }
+        });
+
+        RestClient client = new RestClient(ContentType.JSON);
+        client.setRequestCompressionThreshold(1024);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(payload, client.doGet(base + "/gzip"));
+            assertEquals(payload, client.doGet(base + "/deflate"));
+            assertEquals(payload, client.doPost(base + "/gzip", payload));
+            assertEquals("small", client.doPost(base + "/gzip", "small"));
+        }
+
+        server.createContext("/empty", exchange -> {
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+            exchange.sendResponseHeaders(204, -1);
+            exchange.close();
+        });
+        server.createContext("/corrupt", exchange -> {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            try (OutputStream out = new GZIPOutputStream(compressed)) {
+                out.write(payload.getBytes(StandardCharsets.UTF_8));
+            }
+            byte[] bytes = compressed.toByteArray();
+            bytes[bytes.length - 8] ^= 1;
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        });
+        assertEquals("", client.doGet(base + "/empty"));
+        try {
+            client.doGet(base + "/corrupt");
+            fail("Expected the crc check to fail");
+        } catch (ZipException e) {
+            assertTrue(e.getMessage().contains("crc"));
+        }
+    }
+
+    @Test
+    public void testAsync() throws Exception {
+        RestClient client = new RestClient(ContentType.JSON);
+        client.setConnectTimeout(1000);
+        client.setReadTimeout(5000);
+        try (AsyncRestClient async = new AsyncRestClient(client, 8, 2)) {
+            assertEquals("{\"hello\":\"world\"}", async.doGet(base + "/hello").get(5, TimeUnit.SECONDS));
+            assertArrayEquals("{\"hello\":\"world\"}".getBytes(StandardCharsets.UTF_8), async.doGetBytes(base + "/hello").get(5, TimeUnit.SECONDS));
+            assertEquals("ping", async.doPost(base + "/echo", "ping").get(5, TimeUnit.SECONDS));
+
+            try {
+                async.doGet(base + "/missing").get(5, TimeUnit.SECONDS);
+                fail("Expected the request to fail");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof IOException);
+            }
+
+            List<CompletableFuture<String>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(async.doGet(base + "/slow"));
+            }
+            for (CompletableFuture<String> future : futures) {
+                assertEquals("slow", future.get(5, TimeUnit.SECONDS));
+            }
+            assertTrue(maxConcurrent.get() <= 2);
+        }
+    }
+
+    @Test
+    public void testHostIsolation() throws Exception {
+        server.createContext("/sleep", exchange -> {
+            try {
+                Thread.sleep(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            respond(exchange, 200, "slept");
+        });
+        RestClient client = new RestClient(ContentType.JSON);
+        client.setReadTimeout(5000);
+        try (AsyncRestClient async = new AsyncRestClient(client, 2, 1)) {
+            List<CompletableFuture<String>> slow = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                slow.add(async.doGet(base + "/sleep"));
+            }
+            String other = "http://localhost:" + server.getAddress().getPort();
+            long start = System.nanoTime();
+            assertEquals("{\"hello\":\"world\"}", async.doGet(other + "/hello").get(5, TimeUnit.SECONDS));
+            assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(800));
+            for (CompletableFuture<String> future : slow) {
+                assertEquals("slept", future.get(10, TimeUnit.SECONDS));
+            }
+        }
+    }
+
+    @Test
+    public void testHedgingAndRetries() throws Exception {
+        RestClient client = new RestClient(ContentType.JSON);
+        client.setReadTimeout(5000);
+        try (AsyncRestClient async = new AsyncRestClient(client, 8, 4)) {
+            async.setHedging(0.95, 100, TimeUnit.MILLISECONDS);
+            long start = System.nanoTime();
+            assertEquals("hedged", async.doGet(base + "/stall").get(5, TimeUnit.SECONDS));
+            assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(1500));
+            assertEquals(1, async.getHedges());
+            assertEquals(1, async.getLatency(base + "/stall?query").getCount());
+
+            // a hedge of a coalescing client opens its own connection instead of joining the stalled request
+            client.setCoalescing(true);
+            start = System.nanoTime();
+            assertEquals("hedged", async.doGet(base + "/stall-coalesced").get(5, TimeUnit.SECONDS));
+            assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(1500));
+            assertEquals(2, async.getHedges());
+            client.setCoalescing(false);
+
+            async.setHedging(0, 0, TimeUnit.MILLISECONDS);
+            async.setRetries(3, 1, 10, TimeUnit.MILLISECONDS);
+            assertEquals("flaky", async.doGet(base + "/flaky").get(5, TimeUnit.SECONDS));
+            assertEquals(2, async.getRetries());
+
+            try {
+                async.doGet(base + "/missing").get(5, TimeUnit.SECONDS);
+                fail("Expected the request to fail");
+            } catch (ExecutionException e) {
+                assertEquals(404, ((HttpStatusException) e.getCause()).getStatus());
+            }
+            assertEquals(2, async.getRetries());
+        }
+    }
+
+    @Test
+    public void testCircuitBreaker() throws Exception {
+        RestClient client = new RestClient(ContentType.JSON);
+        try (AsyncRestClient async = new AsyncRestClient(client, 1, 1)) {
+            async.setCircuitBreaker(2, 1, TimeUnit.MINUTES);
+            for (int i = 0; i < 3; i++) {
+                try {
+                    async.doGet(base + "/broken").get(5, TimeUnit.SECONDS);
+                    fail("Expected the request to fail");
+                } catch (ExecutionException e) {
+                    assertTrue(e.getCause() instanceof IOException);
+                }
+            }
+            assertEquals(2, failures.get());
+            assertEquals(CircuitBreaker.State.OPEN, async.getCircuitBreaker(base + "/hello").getState());
+        }
+    }
+
+    @Test
+    public void testCodec() throws Exception {
+        RestClient client = new RestClient(ContentType.JSON);
+        User user = client.doGet(base + "/user", User.class);
+        assertEquals("Sven \"O\" \u00e9", user.name);
+        assertEquals(42, user.age);
+        assertTrue(user.admin);
+        assertEquals(TimeUnit.MINUTES, user.unit);
+        assertEquals(-150, user.score, 0);
+        assertNull(user.missing);
+        assertEquals("default", user.absent);
+        assertEquals(Arrays.asList("a", "b"), user.tags);
+        assertArrayEquals(new int[]{1, 2}, user.scores);
+
+        Map<?, ?> map = client.doGet(base + "/user", Map.class);
+        assertEquals(42L, map.get("age"));
+        assertEquals(Boolean.TRUE, map.get("admin"));
+        assertFalse(map.containsKey("nested"));
+        assertFalse(map.containsKey("tags"));
+        assertTrue(map.containsKey("missing"));
+        assertNull(map.get("missing"));
+
+        user.absent = null;
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        new JsonCodec().encode(user, encoded, StandardCharsets.UTF_8);
+        String json = new String(encoded.toByteArray(), StandardCharsets.UTF_8);
+        assertTrue(json.contains("\"tags\":[\"a\",\"b\"]"));
+        assertTrue(json.contains("\"scores\":[1,2]"));
+
+        User echoed = client.doPost(base + "/echo", user, User.class);
+        assertEquals(user.name, echoed.name);
+        assertEquals(user.unit, echoed.unit);
+        assertNull(echoed.absent);
+        assertEquals(user.tags, echoed.tags);
+        assertArrayEquals(user.scores, echoed.scores);
+
+        user.tags = Arrays.asList(" a,b ", "c", null);
+        echoed = client.doPost(base + "/echo", user, User.class);
+        assertEquals(user.tags, echoed.tags);
+
+        client.setRequestCompressionThreshold(0);
+        try (AsyncRestClient async = new AsyncRestClient(client, 1, 1)) {
+            assertEquals(42, async.doGet(base + "/user", User.class).get(5, TimeUnit.SECONDS).age);
+        }
+    }
+
+    static class User {
+        private String name;
+        private int age;
+        private boolean admin;
+        private TimeUnit unit;
+        private double score;
+        private String missing = "default";
+        private String absent = "default";
+        private List<String> tags;
+        private int[] scores;
+    }
+
+    @Test
+    public void testLatencyHistogram() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i, TimeUnit.MILLISECONDS);
+        }
+        assertEquals(100, histogram.getCount());
+        assertEquals(100, histogram.getMax(TimeUnit.MILLISECONDS));
+        assertEquals(50.5, histogram.getMean(TimeUnit.MICROSECONDS) / 1000, 0.01);
+        long p50 = histogram.getPercentile(0.5, TimeUnit.MILLISECONDS);
+        long p99 = histogram.getPercentile(0.99, TimeUnit.MILLISECONDS);
+        assertTrue(p50 >= 50 && p50 <= 57);
+        assertTrue(p99 >= 99 && p99 <= 100);
+        histogram.reset();
+        assertEquals(0, histogram.getPercentile(0.5, TimeUnit.MILLISECONDS));
+    }
+
+    static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,204 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2016 Sven Olderaan, http://knockturnmc.com/
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE
+ */
+
+package com.knockturnmc.api.util.sql;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.Method;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class CachingDaoProviderTest {
+
+    private ConnectionPool pool;
+    private SqlDaoProvider sqlProvider;
+
+    @Before
+    public void setUp() throws Exception {
+        String url = "jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1";
+        pool = new ConnectionPool(() -> DriverManager.getConnection(url), 0, 4);
+        try (Connection connection = pool.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE profiles (id BINARY(16) PRIMARY KEY, name VARCHAR(16))");
+        }
+        sqlProvider = new SqlDaoProvider(pool);
+    }
+
+    @After
+    public void tearDown() {
+        pool.close();
+    }
+
+    @Test
+    public void testReadThroughAndInvalidation() {
+        CachingDaoProvider provider = new CachingDaoProvider(sqlProvider, 100, 1, TimeUnit.HOURS);
+        ProfileDao dao = provider.getDao(ProfileDao.class);
+        assertSame(dao, provider.getDao(ProfileDao.class));
+        DaoCache cache = provider.getCache(ProfileDao.class);
+
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        dao.insert(first, "first");
+        dao.insert(second, "second");
+
+        assertEquals("first", dao.getName(first));
+        assertEquals("first", dao.getName(first));
+        assertEquals("second", dao.getName(second));
+        assertEquals(2, dao.count());
+        assertEquals(1, cache.getHits());
+        assertEquals(3, cache.getMisses());
+        assertEquals(3, cache.getLoadTime().getCount());
+
+        dao.rename("renamed", first);
+        assertEquals("renamed", dao.getName(first));
+        assertEquals("second", dao.getName(second));
+        assertEquals(2, cache.getHits());
+        assertEquals(2, cache.getInvalidations());
+
+        dao.clear();
+        assertEquals(0, cache.getSize());
+        assertNull(dao.getName(first));
+        assertNull(dao.getName(first));
+        assertEquals(3, cache.getHits());
+    }
+
+    @Test
+    public void testEvictionAndExpiry() throws Exception {
+        CachingDaoProvider provider = new CachingDaoProvider(sqlProvider, 1, 50, TimeUnit.MILLISECONDS);
+        ProfileDao dao = provider.getDao(ProfileDao.class);
+        DaoCache cache = provider.getCache(ProfileDao.class);
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        dao.getName(first);
+        dao.getName(second);
+        assertEquals(1, cache.getSize());
+        assertEquals(1, cache.getEvictions());
+
+        dao.getName(second);
+        assertEquals(1, cache.getHits());
+        Thread.sleep(60);
+        dao.getName(second);
+        assertEquals(1, cache.getHits());
+    }
+
+    @Test
+    public void testKeylessResultsAndConcurrentInvalidation() throws Throwable {
+        DaoCache cache = new DaoCache(64, 1, TimeUnit.HOURS);
+        Method count = ProfileDao.class.getMethod("count");
+        for (int i = 0; i < 32; i++) {
+            int value = i;
+            cache.get(new DaoCache.Key(count, new Object[]{i}, null), () -> value);
+        }
+        assertEquals(32, cache.getSize());
+        assertEquals(0, cache.getEvictions());
+
+        // a write to another entity does not drop a load that is in flight
+        Method getName = ProfileDao.class.getMethod("getName", UUID.class);
+        DaoCache.Key first = new DaoCache.Key(getName, new Object[]{1}, 1);
+        cache.get(first, () -> {
+            cache.invalidate(2);
+            return "first";
+        });
+        assertEquals("first", cache.get(first, () -> "reloaded"));
+
+        // a write to the same entity does
+        DaoCache.Key second = new DaoCache.Key(getName, new Object[]{2}, 2);
+        cache.get(second, () -> {
+            cache.invalidate(2);
+            return "stale";
+        });
+        assertEquals("reloaded", cache.get(second, () -> "reloaded"));
+        // every write also dropped the keyless results
+        assertEquals(2, cache.getSize());
+    }
+
+    @Test
+    public void testCoalescing() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        DaoProvider slow = new DaoProvider() {
+            @Override
+            public <T extends Dao> T getDao(Class<T> target) {
+                return target.cast((SlowDao) id -> {
+                    loads.incrementAndGet();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return "loaded";
+                });
+            }
+        };
+        CachingDaoProvider provider = new CachingDaoProvider(slow, 10, 1, TimeUnit.HOURS);
+        SlowDao dao = provider.getDao(SlowDao.class);
+
+        List<CompletableFuture<String>> futures = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            futures.add(CompletableFuture.supplyAsync(() -> dao.get(1)));
+        }
+        long deadline = System.currentTimeMillis() + 5000;
+        while (provider.getCache(SlowDao.class).getMisses() < 8 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        release.countDown();
+        for (CompletableFuture<String> future : futures) {
+            assertEquals("loaded", future.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, loads.get());
+    }
+
+    public interface ProfileDao extends Dao {
+        @Update("INSERT INTO profiles VALUES (?, ?)")
+        void insert(@CacheKey UUID id, String name);
+
+        @Query("SELECT name FROM profiles WHERE id = ?")
+        String getName(@CacheKey UUID id);
+
+        @Query("SELECT COUNT(*) FROM profiles")
+        int count();
+
+        @Update("UPDATE profiles SET name = ? WHERE id = ?")
+        void rename(String name, @CacheKey UUID id);
+
+        @Update("DELETE FROM profiles")
+        int clear();
+    }
+
+    public interface SlowDao extends Dao {
+        @Query("SELECT name FROM profiles WHERE id = ?")
+        String get(@CacheKey int id);
+    }
+}
@@ -0,0 +1,288 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2016 Sven Olderaan, http://knockturnmc.com/
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE
+ */
+
+package com.knockturnmc.api.util.sql;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class ConnectionPoolTest {
+
+    private ConnectionPool pool;
+
+    @Before
+    public void setUp() throws Exception {
+        String url = "jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1";
+        pool = new ConnectionPool(() -> DriverManager.getConnection(url), 1, 2);
+        try (Connection connection = pool.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE test (id INT PRIMARY KEY)");
+        }
+    }
+
+    @After
+    public void tearDown() {
+        pool.close();
+    }
+
+    @Test
+    public void testReuse() throws Exception {
+        String physical;
+        try (Connection connection = pool.getConnection()) {
+            physical = connection.toString();
+        }
+        try (Connection connection = pool.getConnection()) {
+            assertEquals(physical, connection.toString());
+            assertEquals(1, pool.getActiveConnections());
+        }
+        assertEquals(0, pool.getActiveConnections());
+        assertEquals(3, pool.getWaitTime().getCount());
+    }
+
+    @Test
+    public void testExhausted() throws Exception {
+        pool.setConnectionTimeout(100);
+        Connection first = pool.getConnection();
+        Connection second = pool.getConnection();
+        try {
+            pool.getConnection();
+            fail("Expected the pool to be exhausted");
+        } catch (SQLTimeoutException e) {
+            assertEquals(1, pool.getTimeouts());
+        }
+
+        pool.setConnectionTimeout(5000);
+        CompletableFuture<Connection> waiting = CompletableFuture.supplyAsync(() -> {
+            try {
+                return pool.getConnection();
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        while (pool.getPendingThreads() == 0) {
+            Thread.sleep(1);
+        }
+        first.close();
+        waiting.get(5, TimeUnit.SECONDS).close();
+        second.close();
+        assertEquals(2, pool.getTotalConnections());
+        assertEquals(2, pool.getIdleConnections());
+
+        try {
+            first.createStatement();
+            fail("Expected the returned connection to be closed");
+        } catch (SQLException e) {
+            assertTrue(first.isClosed());
+        }
+    }
+
+    @Test
+    public void testCloseWakesWaiters() throws Exception {
+        pool.setConnectionTimeout(30000);
+        Connection first = pool.getConnection();
+        Connection second = pool.getConnection();
+        CompletableFuture<Connection> waiting = CompletableFuture.supplyAsync(() -> {
+            try {
+                return pool.getConnection();
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        while (pool.getPendingThreads() == 0) {
+            Thread.sleep(1);
+        }
+        pool.close();
+        try {
+            waiting.get(5, TimeUnit.SECONDS);
+            fail("Expected the pool to be closed");
+        } catch (java.util.concurrent.ExecutionException e) {
+            assertEquals("Pool is closed", e.getCause().getCause().getMessage());
+        }
+        first.close();
+        second.close();
+        assertEquals(0, pool.getTotalConnections());
+    }
+
+    @Test
+    public void testStatementsClosedOnReturn() throws Exception {
+        Statement statement;
+        PreparedStatement prepared;
+        try (Connection connection = pool.getConnection()) {
+            statement = connection.createStatement();
+            prepared = connection.prepareStatement("SELECT 1");
+            assertSame(connection, statement.getConnection());
+            assertSame(connection, prepared.getConnection());
+        }
+        assertTrue(statement.isClosed());
+        assertTrue(prepared.isClosed());
+    }
+
+    @Test
+    public void testRollbackOnReturn() throws Exception {
+        try (Connection connection = pool.getConnection(); Statement statement = connection.createStatement()) {
+            connection.setAutoCommit(false);
+            statement.executeUpdate("INSERT INTO test VALUES (1)");
+        }
+        try (Connection connection = pool.getConnection(); Statement statement = connection.createStatement();
+             ResultSet result = statement.executeQuery("SELECT COUNT(*) FROM test")) {
+            assertTrue(connection.getAutoCommit());
+            assertTrue(result.next());
+            assertEquals(0, result.getInt(1));
+        }
+    }
+
+    @Test
+    public void testStatementCache() throws Exception {
+        String url = "jdbc:h2:mem:" + UUID.randomUUID();
+        try (ConnectionPool pool = new ConnectionPool(() -> DriverManager.getConnection(url), 0, 1)) {
+            pool.setStatementCacheSize(2);
+            SqlConnector connector = new SqlConnector(pool) {
+            };
+
+            PreparedStatement leaked;
+            try (Connection connection = pool.getConnection()) {
+                Object physical;
+                try (PreparedStatement statement = connector.prepareStatement(connection, "SELECT ?")) {
+                    statement.setInt(1, 1);
+                    physical = statement.unwrap(org.h2.jdbc.JdbcPreparedStatement.class);
+                    assertSame(connection, statement.getConnection());
+                }
+                try (PreparedStatement statement = connector.prepareStatement(connection, "SELECT ?");
+                     PreparedStatement nested = connector.prepareStatement(connection, "SELECT ?")) {
+                    assertSame(physical, statement.unwrap(org.h2.jdbc.JdbcPreparedStatement.class));
+                    assertNotSame(physical, nested.unwrap(org.h2.jdbc.JdbcPreparedStatement.class));
+                    assertSame(connection, nested.getConnection());
+                    statement.setInt(1, 2);
+                    try (ResultSet result = statement.executeQuery()) {
+                        assertTrue(result.next());
+                        assertEquals(2, result.getInt(1));
+                    }
+                }
+                assertEquals(1, pool.getStatementCacheHits());
+                assertEquals(2, pool.getStatementCacheMisses());
+
+                connector.prepareStatement(connection, "SELECT 1").close();
+                connector.prepareStatement(connection, "SELECT 2").close();
+                assertEquals(1, pool.getStatementCacheEvictions());
+                leaked = connector.prepareStatement(connection, "SELECT 2");
+            }
+            assertTrue(leaked.isClosed());
+            assertEquals(2 / 6D, pool.getStatementCacheHitRate(), 0.001);
+        }
+    }
+
+    @Test
+    public void testStatementSettingsReset() throws Exception {
+        String url = "jdbc:h2:mem:" + UUID.randomUUID();
+        try (ConnectionPool pool = new ConnectionPool(() -> DriverManager.getConnection(url), 0, 1)) {
+            pool.setStatementCacheSize(2);
+            SqlConnector connector = new SqlConnector(pool) {
+            };
+
+            try (Connection connection = pool.getConnection()) {
+                int fetchSize;
+                try (PreparedStatement statement = connector.prepareStatement(connection, "SELECT 1")) {
+                    fetchSize = statement.getFetchSize();
+                    statement.setFetchSize(fetchSize + 7);
+                    statement.setMaxRows(1);
+                    statement.setQueryTimeout(5);
+                }
+                try (PreparedStatement statement = connector.prepareStatement(connection, "SELECT 1")) {
+                    assertEquals(fetchSize, statement.getFetchSize());
+                    assertEquals(0, statement.getMaxRows());
+                    assertEquals(0, statement.getQueryTimeout());
+                }
+                assertEquals(1, pool.getStatementCacheHits());
+
+                Object physical;
+                try (PreparedStatement statement = connector.prepareStatement(connection, "SELECT 1")) {
+                    physical = statement.unwrap(org.h2.jdbc.JdbcPreparedStatement.class);
+                    statement.setEscapeProcessing(false);
+                }
+                try (PreparedStatement statement = connector.prepareStatement(connection, "SELECT 1")) {
+                    assertNotSame(physical, statement.unwrap(org.h2.jdbc.JdbcPreparedStatement.class));
+                }
+                assertEquals(2, pool.getStatementCacheHits());
+            }
+        }
+    }
+
+    @Test
+    public void testUnwrap() throws Exception {
+        try (Connection connection = pool.getConnection()) {
+            assertSame(connection, connection.unwrap(Connection.class));
+            assertTrue(connection.isWrapperFor(Connection.class));
+            assertFalse(connection.isWrapperFor(org.h2.jdbc.JdbcConnection.class));
+            try {
+                connection.unwrap(org.h2.jdbc.JdbcConnection.class);
+                fail("the physical connection was handed out");
+            } catch (SQLException expected) {
+            }
+        }
+    }
+
+    @Test
+    public void testIdleEviction() throws Exception {
+        try (Connection first = pool.getConnection(); Connection second = pool.getConnection()) {
+            assertEquals(2, pool.getTotalConnections());
+        }
+        pool.setIdleTimeout(1);
+        Thread.sleep(10);
+        pool.housekeep();
+        assertEquals(1, pool.getTotalConnections());
+        assertEquals(1, pool.getIdleConnections());
+
+        pool.setIdleTimeout(0);
+        try (Connection first = pool.getConnection(); Connection second = pool.getConnection()) {
+            assertEquals(2, pool.getTotalConnections());
+        }
+        Thread.sleep(10);
+        pool.housekeep();
+        assertEquals(2, pool.getTotalConnections());
+    }
+
+    @Test
+    public void testLeakDetection() throws Exception {
+        pool.setLeakDetectionThreshold(20);
+        try (Connection ignored = pool.getConnection()) {
+            long deadline = System.currentTimeMillis() + 5000;
+            while (pool.getLeaks() == 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+        }
+        assertEquals(1, pool.getLeaks());
+    }
+}
@@ -0,0 +1,85 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2016 Sven Olderaan, http://knockturnmc.com/
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE
+ */
+
+package com.knockturnmc.api.util.sql;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the overhead of an {@link InstrumentedDatasource} on a pooled in-memory database.
+ * Run manually, it is not part of the test suite.
+ */
+public class InstrumentedDatasourceBenchmark {
+
+    private static final String QUERY = "SELECT name FROM test WHERE id = ?";
+    private static final int ROWS = 1000;
+    private static final int ITERATIONS = 200_000;
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) throws Exception {
+        String url = "jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1";
+        try (ConnectionPool pool = new ConnectionPool(() -> DriverManager.getConnection(url), 1, 1)) {
+            pool.setStatementCacheSize(16);
+            try (Connection connection = pool.getConnection(); Statement statement = connection.createStatement()) {
+                statement.execute("CREATE TABLE test (id INT PRIMARY KEY, name VARCHAR(16))");
+                statement.execute("INSERT INTO test SELECT X, 'name' || X FROM SYSTEM_RANGE(0, " + (ROWS - 1) + ")");
+            }
+            InstrumentedDatasource instrumented = new InstrumentedDatasource(pool);
+            for (int round = 0; round < ROUNDS; round++) {
+                long plain = run(pool);
+                long measured = run(instrumented);
+                System.out.printf("round %d: plain %.0f ns/op, instrumented %.0f ns/op, overhead %.1f%%%n", round,
+                        plain / (double) ITERATIONS, measured / (double) ITERATIONS, (measured - plain) * 100D / plain);
+            }
+            System.out.printf("p50 %d us, p99 %d us, acquire p99 %d us%n",
+                    instrumented.getLatency(QUERY).getPercentile(0.5, TimeUnit.MICROSECONDS),
+                    instrumented.getLatency(QUERY).getPercentile(0.99, TimeUnit.MICROSECONDS),
+                    instrumented.getAcquireTime().getPercentile(0.99, TimeUnit.MICROSECONDS));
+        }
+    }
+
+    private static long run(SqlDatasource datasource) throws SQLException {
+        long start = System.nanoTime();
+        long checksum = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            try (Connection connection = datasource.getConnection();
+                 PreparedStatement statement = ConnectionPool.prepareCached(connection, QUERY)) {
+                statement.setInt(1, i % ROWS);
+                try (ResultSet result = statement.executeQuery()) {
+                    if (result.next())
+                        checksum += result.getString(1).length();
+                }
+            }
+        }
+        if (checksum == 0)
+            throw new IllegalStateException();
+        return System.nanoTime() - start;
+    }
+}
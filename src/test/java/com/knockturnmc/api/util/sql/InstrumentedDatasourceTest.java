@@ -0,0 +1,150 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2016 Sven Olderaan, http://knockturnmc.com/
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE
+ */
+
+package com.knockturnmc.api.util.sql;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class InstrumentedDatasourceTest {
+
+    private ConnectionPool pool;
+    private InstrumentedDatasource datasource;
+
+    @Before
+    public void setUp() throws Exception {
+        String url = "jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1";
+        pool = new ConnectionPool(() -> DriverManager.getConnection(url), 0, 2);
+        pool.setStatementCacheSize(16);
+        datasource = new InstrumentedDatasource(pool);
+        try (Connection connection = datasource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE test (id INT PRIMARY KEY, name VARCHAR(16))");
+        }
+    }
+
+    @After
+    public void tearDown() {
+        pool.close();
+    }
+
+    @Test
+    public void testLatency() throws Exception {
+        String insert = "INSERT INTO test VALUES (?, ?)";
+        String select = "SELECT name FROM test WHERE id = ?";
+        try (Connection connection = datasource.getConnection()) {
+            try (PreparedStatement statement = connection.prepareStatement(insert)) {
+                for (int i = 0; i < 10; i++) {
+                    statement.setInt(1, i);
+                    statement.setString(2, "name" + i);
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+            }
+            for (int i = 0; i < 3; i++) {
+                try (PreparedStatement statement = ConnectionPool.prepareCached(connection, select)) {
+                    assertSame(connection, statement.getConnection());
+                    statement.setInt(1, i);
+                    try (ResultSet result = statement.executeQuery()) {
+                        assertTrue(result.next());
+                        assertEquals("name" + i, result.getString(1));
+                    }
+                }
+            }
+        }
+        assertEquals(2, datasource.getAcquireTime().getCount());
+        assertEquals(1, datasource.getLatency(insert).getCount());
+        assertEquals(3, datasource.getLatency(select).getCount());
+        assertEquals(2, pool.getStatementCacheHits());
+        assertEquals(3, datasource.getQueries().size());
+        assertEquals(0, datasource.getSlowQueries());
+    }
+
+    @Test
+    public void testSlowQueries() throws Exception {
+        datasource.setSlowQueryThreshold(0, TimeUnit.MILLISECONDS);
+        datasource.setMaxQueries(1);
+        try (Connection connection = datasource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.executeUpdate("INSERT INTO test VALUES (1, 'slow')");
+            try (ResultSet result = statement.executeQuery("SELECT COUNT(*) FROM test")) {
+                assertTrue(result.next());
+                assertEquals(1, result.getInt(1));
+            }
+        }
+        assertEquals(2, datasource.getSlowQueries());
+        assertEquals(2, datasource.getOtherQueries().getCount());
+        assertNull(datasource.getLatency("SELECT COUNT(*) FROM test"));
+
+        datasource.setSlowQueryThreshold(-1, TimeUnit.MILLISECONDS);
+        datasource.reset();
+        try (Connection connection = datasource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.executeUpdate("DELETE FROM test");
+        }
+        assertEquals(0, datasource.getSlowQueries());
+        assertEquals(1, datasource.getQueries().size());
+    }
+
+    @Test
+    public void testMaxQueriesConcurrent() throws Exception {
+        datasource.reset();
+        datasource.setMaxQueries(4);
+        datasource.setLogParameters(false);
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int thread = 0; thread < 8; thread++) {
+            int offset = thread;
+            futures.add(CompletableFuture.runAsync(() -> {
+                try (Connection connection = datasource.getConnection(); Statement statement = connection.createStatement()) {
+                    for (int i = 0; i < 50; i++) {
+                        statement.executeQuery("SELECT " + (offset * 50 + i)).close();
+                    }
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(30, TimeUnit.SECONDS);
+        assertEquals(4, datasource.getQueries().size());
+        assertEquals(400 - 4, datasource.getOtherQueries().getCount());
+
+        datasource.reset();
+        try (Connection connection = datasource.getConnection(); Statement statement = connection.createStatement()) {
+            for (int i = 0; i < 6; i++) {
+                statement.executeQuery("SELECT " + i).close();
+            }
+        }
+        assertEquals(4, datasource.getQueries().size());
+    }
+}
@@ -0,0 +1,212 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2016 Sven Olderaan, http://knockturnmc.com/
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE
+ */
+
+package com.knockturnmc.api.util.sql;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+public class RoutingDatasourceTest {
+
+    private final AtomicBoolean replicaDown = new AtomicBoolean();
+    private RoutingDatasource datasource;
+
+    @Before
+    public void setUp() throws Exception {
+        SqlDatasource primary = createNode("primary");
+        SqlDatasource first = createNode("replica-0");
+        SqlDatasource second = createNode("replica-1");
+        SqlDatasource failing = () -> {
+            if (replicaDown.get())
+                throw new SQLException("Connection refused", "08001");
+            return second.getConnection();
+        };
+        datasource = new RoutingDatasource(primary, Arrays.asList(first, failing));
+    }
+
+    private static SqlDatasource createNode(String name) throws SQLException {
+        String url = "jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1";
+        try (Connection connection = DriverManager.getConnection(url); Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE node (name VARCHAR(16))");
+            statement.execute("INSERT INTO node VALUES ('" + name + "')");
+        }
+        return () -> DriverManager.getConnection(url);
+    }
+
+    private static String queryNode(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement(); ResultSet resultSet = statement.executeQuery("SELECT name FROM node")) {
+            assertTrue(resultSet.next());
+            return resultSet.getString(1);
+        }
+    }
+
+    @Test
+    public void testRouting() throws Exception {
+        try (Connection connection = datasource.getConnection()) {
+            assertEquals("primary", queryNode(connection));
+        }
+        try (Connection connection = datasource.getConnection()) {
+            connection.setReadOnly(true);
+            assertTrue(queryNode(connection).startsWith("replica-"));
+        }
+        try (RoutingDatasource.ReadScope ignored = datasource.readScope(); Connection connection = datasource.getConnection()) {
+            assertTrue(queryNode(connection).startsWith("replica-"));
+        }
+        assertEquals(1, datasource.getWrites());
+        assertEquals(2, datasource.getReplicaReads());
+        assertEquals(1, datasource.getPrimary().getConnections());
+        assertEquals(1, datasource.getPrimary().getHoldTime().getCount());
+    }
+
+    @Test
+    public void testLeastLoaded() throws Exception {
+        List<Connection> connections = new ArrayList<>();
+        try (RoutingDatasource.ReadScope ignored = datasource.readScope()) {
+            for (int i = 0; i < 4; i++) {
+                connections.add(datasource.getConnection());
+            }
+        }
+        for (RoutingDatasource.Node replica : datasource.getReplicas()) {
+            assertEquals(2, replica.getActiveConnections());
+            assertEquals(2, replica.getAcquireTime().getCount());
+        }
+        for (Connection connection : connections) {
+            connection.close();
+        }
+        for (RoutingDatasource.Node replica : datasource.getReplicas()) {
+            assertEquals(0, replica.getActiveConnections());
+        }
+    }
+
+    @Test
+    public void testFallback() throws Exception {
+        replicaDown.set(true);
+        datasource.setRetryInterval(60000);
+        try (RoutingDatasource.ReadScope ignored = datasource.readScope()) {
+            for (int i = 0; i < 4; i++) {
+                try (Connection connection = datasource.getConnection()) {
+                    assertEquals("replica-0", queryNode(connection));
+                }
+            }
+        }
+        RoutingDatasource.Node failing = datasource.getReplicas().get(1);
+        assertFalse(failing.isHealthy());
+        assertEquals(1, failing.getFailures());
+
+        Connection held = datasource.getConnection();
+        held.setReadOnly(true);
+        assertEquals("replica-0", queryNode(held));
+        datasource.setRetryInterval(0);
+        replicaDown.set(false);
+        try (Connection connection = datasource.getConnection()) {
+            connection.setReadOnly(true);
+            assertEquals("replica-1", queryNode(connection));
+        }
+        held.close();
+        assertTrue(failing.isHealthy());
+    }
+
+    @Test
+    public void testHalfOpenTrialTaken() throws Exception {
+        AtomicBoolean down = new AtomicBoolean(true);
+        CountDownLatch opening = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        SqlDatasource second = createNode("replica-1");
+        RoutingDatasource routing = new RoutingDatasource(createNode("primary"), Arrays.asList(createNode("replica-0"), () -> {
+            if (down.get())
+                throw new SQLException("Connection refused", "08001");
+            opening.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new SQLException(e);
+            }
+            return second.getConnection();
+        }));
+        routing.setRetryInterval(0);
+
+        List<Connection> connections = new ArrayList<>();
+        try (RoutingDatasource.ReadScope ignored = routing.readScope()) {
+            for (int i = 0; i < 2; i++) {
+                Connection connection = routing.getConnection();
+                assertEquals("replica-0", queryNode(connection));
+                connections.add(connection);
+            }
+        }
+        assertEquals(1, routing.getReplicas().get(1).getFailures());
+
+        // the recovering replica is less loaded, the first read takes its trial request and blocks
+        down.set(false);
+        CompletableFuture<Connection> trial = CompletableFuture.supplyAsync(() -> {
+            try (RoutingDatasource.ReadScope ignored = routing.readScope()) {
+                return routing.getConnection();
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        assertTrue(opening.await(5, TimeUnit.SECONDS));
+        try (RoutingDatasource.ReadScope ignored = routing.readScope(); Connection connection = routing.getConnection()) {
+            assertEquals("replica-0", queryNode(connection));
+        }
+        assertEquals(0, routing.getFallbacks());
+
+        release.countDown();
+        try (Connection connection = trial.get(5, TimeUnit.SECONDS)) {
+            assertEquals("replica-1", queryNode(connection));
+        }
+        for (Connection connection : connections) {
+            connection.close();
+        }
+    }
+
+    @Test
+    public void testPrimaryFallback() throws Exception {
+        RoutingDatasource unavailable = new RoutingDatasource(createNode("primary"),
+                Arrays.<SqlDatasource>asList(() -> {
+                    throw new SQLException("Connection refused", "08001");
+                }));
+        try (Connection connection = unavailable.getConnection()) {
+            connection.setReadOnly(true);
+            assertEquals("primary", queryNode(connection));
+        }
+        assertEquals(1, unavailable.getFallbacks());
+        assertEquals(1, unavailable.getPrimaryReads());
+        assertFalse(unavailable.getReplicas().get(0).isHealthy());
+    }
+}
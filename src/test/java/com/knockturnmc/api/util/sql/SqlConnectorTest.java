@@ -0,0 +1,182 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2016 Sven Olderaan, http://knockturnmc.com/
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE
+ */
+
+package com.knockturnmc.api.util.sql;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static com.knockturnmc.api.util.Utils.getBytes;
+import static org.junit.Assert.*;
+
+public class SqlConnectorTest {
+
+    private ConnectionPool pool;
+    private SqlConnector connector;
+
+    @Before
+    public void setUp() throws Exception {
+        String url = "jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1";
+        pool = new ConnectionPool(() -> DriverManager.getConnection(url), 0, 2);
+        connector = new SqlConnector(pool) {
+        };
+        try (Connection connection = pool.getConnection()) {
+            connection.createStatement().execute("CREATE TABLE entries (id INT PRIMARY KEY, entry_name VARCHAR(16))");
+            try (PreparedStatement statement = connection.prepareStatement("INSERT INTO entries VALUES (?, ?)")) {
+                for (int i = 0; i < 1000; i++) {
+                    statement.setInt(1, i);
+                    statement.setString(2, "entry" + i);
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+            }
+        }
+    }
+
+    @After
+    public void tearDown() {
+        pool.close();
+    }
+
+    @Test
+    public void testStream() throws Exception {
+        try (Stream<Entry> entries = connector.stream("SELECT * FROM entries WHERE id >= ? ORDER BY id", Entry.class, 100, 500)) {
+            List<Entry> list = entries.collect(Collectors.toList());
+            assertEquals(500, list.size());
+            assertEquals(500, list.get(0).id);
+            assertEquals("entry999", list.get(499).entryName);
+            assertEquals(1, pool.getActiveConnections());
+        }
+        assertEquals(0, pool.getActiveConnections());
+
+        try (Stream<Integer> ids = connector.stream("SELECT id FROM entries", Integer.class, 0)) {
+            assertEquals(499500, ids.mapToInt(Integer::intValue).sum());
+        }
+    }
+
+    @Test
+    public void testLazy() throws Exception {
+        AtomicInteger mapped = new AtomicInteger();
+        try (Stream<String> names = connector.stream("SELECT entry_name FROM entries ORDER BY id",
+                result -> {
+                    mapped.incrementAndGet();
+                    return result.getString(1);
+                }, 10)) {
+            assertEquals("entry0,entry1,entry2", names.limit(3).collect(Collectors.joining(",")));
+        }
+        assertEquals(3, mapped.get());
+        try (Connection connection = pool.getConnection()) {
+            assertTrue(connection.getAutoCommit());
+        }
+    }
+
+    @Test
+    public void testFailure() throws Exception {
+        try {
+            connector.stream("SELECT * FROM missing", Entry.class, 10);
+            fail("Expected the query to fail");
+        } catch (java.sql.SQLException e) {
+            assertEquals(0, pool.getActiveConnections());
+        }
+    }
+
+    @Test
+    public void testAsync() throws Exception {
+        assertEquals(2, connector.getExecutor().getThreads());
+        ConcurrentLinkedQueue<Runnable> mainThread = new ConcurrentLinkedQueue<>();
+        CompletableFuture<String> name = connector.async(() -> {
+            try (Connection connection = pool.getConnection();
+                 ResultSet result = connection.createStatement().executeQuery("SELECT entry_name FROM entries WHERE id = 42")) {
+                assertTrue(result.next());
+                return result.getString(1);
+            }
+        }, mainThread::add);
+        CompletableFuture<Integer> length = name.thenApply(String::length);
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (mainThread.isEmpty() && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertFalse(name.isDone());
+        mainThread.poll().run();
+        assertEquals("entry42", name.get());
+        assertEquals(7, (int) length.get());
+        assertEquals(1, connector.getExecutor().getCompleted());
+        assertEquals(1, connector.getExecutor().getWaitTime().getCount());
+    }
+
+    @Test
+    public void testPreload() throws Exception {
+        UUID[] ids = new UUID[5000];
+        try (Connection connection = pool.getConnection()) {
+            connection.createStatement().execute("CREATE TABLE players (uuid BINARY(16) PRIMARY KEY, player_name VARCHAR(16))");
+            try (PreparedStatement statement = connection.prepareStatement("INSERT INTO players VALUES (?, ?)")) {
+                for (int i = 0; i < ids.length; i++) {
+                    ids[i] = UUID.randomUUID();
+                    statement.setBytes(1, getBytes(ids[i]));
+                    statement.setString(2, "player" + i);
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+            }
+        }
+
+        Preload<String> preload = connector.preload("players", "uuid", result -> result.getString("player_name"), 4, 500);
+        Map<UUID, String> index = preload.getIndex().get(10, TimeUnit.SECONDS);
+        assertEquals(ids.length, index.size());
+        assertEquals(ids.length, preload.getRows());
+        assertEquals("player42", index.get(ids[42]));
+        assertEquals(4, preload.getLoadedPartitions());
+        assertEquals(1, preload.getProgress(), 0);
+        assertTrue(preload.getRowsPerSecond() > 0);
+        assertEquals(0, pool.getActiveConnections());
+
+        Preload<Entry> failed = connector.preload("entries", "id", Entry.class, 2, 0);
+        try {
+            failed.getIndex().get(10, TimeUnit.SECONDS);
+            fail("Expected the preload to fail");
+        } catch (java.util.concurrent.ExecutionException e) {
+            assertTrue(failed.isDone());
+        }
+    }
+
+    public static class Entry {
+        private int id;
+        private String entryName;
+    }
+}
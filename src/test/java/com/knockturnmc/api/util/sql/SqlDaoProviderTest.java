@@ -0,0 +1,180 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2016 Sven Olderaan, http://knockturnmc.com/
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE
+ */
+
+package com.knockturnmc.api.util.sql;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+public class SqlDaoProviderTest {
+
+    private ConnectionPool pool;
+    private SqlDaoProvider provider;
+
+    @Before
+    public void setUp() throws Exception {
+        String url = "jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1";
+        pool = new ConnectionPool(() -> DriverManager.getConnection(url), 0, 2);
+        pool.setStatementCacheSize(8);
+        try (Connection connection = pool.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE users (id BINARY(16) PRIMARY KEY, user_name VARCHAR(16), coins INT, unit VARCHAR(16))");
+        }
+        provider = new SqlDaoProvider(pool);
+    }
+
+    @After
+    public void tearDown() {
+        pool.close();
+    }
+
+    @Test
+    public void testDao() throws Exception {
+        UserDao dao = provider.getDao(UserDao.class);
+        assertSame(dao, provider.getDao(UserDao.class));
+
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        assertEquals(1, dao.insert(first, "first", 10, TimeUnit.SECONDS));
+        dao.insert(second, "second", 20, null);
+
+        User user = dao.get(first);
+        assertEquals(first, user.id);
+        assertEquals("first", user.userName);
+        assertEquals(10, user.coins);
+        assertEquals(TimeUnit.SECONDS, user.unit);
+        assertNull(dao.get(UUID.randomUUID()));
+
+        assertEquals(Optional.of("second"), dao.getName(second));
+        assertFalse(dao.getName(UUID.randomUUID()).isPresent());
+        assertEquals(2, dao.count());
+        assertTrue(dao.exists(first));
+        assertFalse(dao.exists(UUID.randomUUID()));
+
+        List<User> users = dao.getRicherThan(5);
+        assertEquals(2, users.size());
+        assertEquals("second", users.get(1).userName);
+        assertNull(users.get(1).unit);
+
+        try (Stream<String> names = dao.streamNames()) {
+            assertEquals("first,second", names.collect(Collectors.joining(",")));
+        }
+        try (Stream<TimeUnit> units = dao.streamUnits()) {
+            assertEquals(Arrays.asList(TimeUnit.SECONDS, null), units.collect(Collectors.toList()));
+        }
+        assertEquals(0, pool.getActiveConnections());
+
+        assertEquals(2L, dao.addCoins(5));
+        assertEquals(15, dao.get(first).coins);
+        assertTrue(pool.getStatementCacheHits() > 0);
+
+        try {
+            dao.getCoins(UUID.randomUUID());
+            fail("Expected the missing row to be rejected");
+        } catch (SQLException e) {
+            assertTrue(e.getMessage().endsWith("returned no rows"));
+        }
+        try {
+            dao.getMaxCoins(null);
+            fail("Expected the NULL value to be rejected");
+        } catch (SQLException e) {
+            assertTrue(e.getMessage().endsWith("returned NULL"));
+        }
+
+        try {
+            dao.invalid();
+            fail("Expected the query to fail");
+        } catch (SQLException e) {
+            assertEquals(0, pool.getActiveConnections());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnannotated() {
+        provider.getDao(InvalidDao.class);
+    }
+
+    public interface UserDao extends Dao {
+        @Update("INSERT INTO users (id, user_name, coins, unit) VALUES (?, ?, ?, ?)")
+        int insert(UUID id, String name, int coins, TimeUnit unit);
+
+        @Query("SELECT * FROM users WHERE id = ?")
+        User get(UUID id);
+
+        @Query("SELECT user_name FROM users WHERE id = ?")
+        Optional<String> getName(UUID id);
+
+        @Query("SELECT COUNT(*) FROM users")
+        int count();
+
+        default boolean exists(UUID id) {
+            return getName(id).isPresent();
+        }
+
+        @Query("SELECT coins FROM users WHERE id = ?")
+        int getCoins(UUID id) throws SQLException;
+
+        @Query("SELECT MAX(coins) FROM users WHERE user_name = ?")
+        int getMaxCoins(String name) throws SQLException;
+
+        @Query("SELECT * FROM users WHERE coins > ? ORDER BY coins")
+        List<User> getRicherThan(int coins);
+
+        @Query(value = "SELECT user_name FROM users ORDER BY user_name", fetchSize = 1)
+        Stream<String> streamNames();
+
+        @Query("SELECT unit FROM users ORDER BY user_name")
+        Stream<TimeUnit> streamUnits();
+
+        @Update("UPDATE users SET coins = coins + ?")
+        long addCoins(int coins);
+
+        @Query("SELECT * FROM missing")
+        User invalid() throws SQLException;
+    }
+
+    public interface InvalidDao extends Dao {
+        void unannotated();
+    }
+
+    public static class User {
+        private UUID id;
+        private String userName;
+        private int coins;
+        private TimeUnit unit;
+    }
+}
@@ -0,0 +1,107 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2016 Sven Olderaan, http://knockturnmc.com/
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE
+ */
+
+package com.knockturnmc.api.util.sql;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.sql.SQLException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class SqlExecutorTest {
+
+    private final SqlExecutor executor = new SqlExecutor(1, 2);
+
+    @After
+    public void tearDown() {
+        executor.close();
+    }
+
+    @Test
+    public void testBounded() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Integer> blocking = executor.submit(() -> {
+            started.countDown();
+            release.await();
+            return 1;
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        CompletableFuture<Integer> second = executor.submit(() -> 2);
+        CompletableFuture<Integer> cancelled = executor.submit(() -> {
+            throw new AssertionError("cancelled task was executed");
+        });
+        CompletableFuture<Integer> rejected = executor.submit(() -> 4);
+
+        assertEquals(2, executor.getQueueDepth());
+        assertEquals(1, executor.getActiveTasks());
+        assertTrue(rejected.isCompletedExceptionally());
+        assertEquals(1, executor.getRejected());
+        cancelled.cancel(false);
+
+        release.countDown();
+        assertEquals(1, (int) blocking.get(5, TimeUnit.SECONDS));
+        assertEquals(2, (int) second.get(5, TimeUnit.SECONDS));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (executor.getWaitTime().getCount() < 3 && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(3, executor.getWaitTime().getCount());
+        assertEquals(2, executor.getCompleted());
+        assertEquals(0, executor.getQueueDepth());
+    }
+
+    @Test
+    public void testFailure() throws Exception {
+        CompletableFuture<Object> failed = executor.submit(() -> {
+            throw new SQLException("broken");
+        });
+        try {
+            failed.get(5, TimeUnit.SECONDS);
+            fail("Expected the task to fail");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof SQLException);
+        }
+        assertEquals(1, executor.getFailed());
+        assertEquals(1, executor.getExecutionTime().getCount());
+    }
+
+    @Test
+    public void testRejectedException() {
+        executor.close();
+        CompletableFuture<Integer> future = executor.submit(() -> 1);
+        try {
+            future.join();
+            fail("Expected the task to be rejected");
+        } catch (Exception e) {
+            assertTrue(e.getCause() instanceof RejectedExecutionException);
+        }
+    }
+}
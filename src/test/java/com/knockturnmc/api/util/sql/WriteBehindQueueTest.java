@@ -0,0 +1,190 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2016 Sven Olderaan, http://knockturnmc.com/
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE
+ */
+
+package com.knockturnmc.api.util.sql;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class WriteBehindQueueTest {
+
+    private static final String MERGE = "MERGE INTO stats KEY (id) VALUES (?, ?)";
+
+    private ConnectionPool pool;
+
+    @Before
+    public void setUp() throws Exception {
+        String url = "jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1";
+        pool = new ConnectionPool(() -> DriverManager.getConnection(url), 0, 2);
+        try (Connection connection = pool.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE stats (id INT PRIMARY KEY, score INT)");
+        }
+    }
+
+    @After
+    public void tearDown() {
+        pool.close();
+    }
+
+    @Test
+    public void testCoalescing() throws Exception {
+        try (WriteBehindQueue queue = new WriteBehindQueue(pool, 100, 100, 1, TimeUnit.HOURS)) {
+            queue.submit(1, MERGE, 1, 10);
+            queue.submit(1, MERGE, 1, 20);
+            queue.submit(2, MERGE, 2, 5);
+            queue.submit(1, MERGE, 1, 30);
+            assertEquals(2, queue.getQueueSize());
+            queue.flush();
+            assertEquals(0, queue.getQueueSize());
+            assertEquals(2, queue.getWrites());
+            assertEquals(2, queue.getCoalesced());
+            assertEquals(1, queue.getBatches());
+            assertEquals(2, queue.getAverageBatchSize(), 0);
+        }
+        assertEquals(30, getScore(1));
+        assertEquals(5, getScore(2));
+    }
+
+    @Test
+    public void testMixedStatements() throws Exception {
+        try (WriteBehindQueue queue = new WriteBehindQueue(pool, 100, 100, 1, TimeUnit.HOURS)) {
+            queue.submit(1, MERGE, 1, 10);
+            queue.submit(1, "DELETE FROM stats WHERE id = ?", 1);
+            queue.submit(2, MERGE, 2, 5);
+            queue.submit(1, MERGE, 1, 20);
+            queue.submit(1, MERGE, 1, 30);
+            assertEquals(3, queue.getQueueSize());
+            assertEquals(2, queue.getCoalesced());
+            queue.flush();
+        }
+        assertEquals(30, getScore(1));
+        assertEquals(5, getScore(2));
+    }
+
+    @Test
+    public void testInterrupted() throws Exception {
+        WriteBehindQueue queue = new WriteBehindQueue(pool, 1, 100, 1, TimeUnit.HOURS);
+        queue.submit(1, MERGE, 1, 10);
+        Thread flusher = null;
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().startsWith("WriteBehind-") && !thread.getName().endsWith("-shutdown"))
+                flusher = thread;
+        }
+        assertNotNull(flusher);
+        flusher.interrupt();
+        flusher.join(5000);
+        assertFalse(flusher.isAlive());
+
+        // the pending write was written before the flusher stopped, later writes are rejected instead of blocking
+        assertEquals(1, queue.getWrites());
+        assertEquals(10, getScore(1));
+        try {
+            queue.submit(2, MERGE, 2, 20);
+            fail("Expected the write to be rejected");
+        } catch (IllegalStateException ignored) {
+        }
+        queue.flush();
+        queue.close();
+    }
+
+    @Test
+    public void testBatchSizeAndClose() throws Exception {
+        WriteBehindQueue queue = new WriteBehindQueue(pool, 100, 10, 1, TimeUnit.HOURS);
+        for (int i = 0; i < 10; i++) {
+            queue.submit(null, MERGE, i, i);
+        }
+        long deadline = System.currentTimeMillis() + 5000;
+        while (queue.getWrites() < 10 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(10, queue.getWrites());
+        for (int i = 10; i < 15; i++) {
+            queue.submit(null, MERGE, i, i);
+        }
+        Thread.sleep(50);
+        assertEquals(5, queue.getQueueSize());
+        queue.close();
+        assertEquals(15, queue.getWrites());
+        assertEquals(14, getScore(14));
+        try {
+            queue.submit(null, MERGE, 1, 1);
+            fail("Expected the queue to be closed");
+        } catch (IllegalStateException ignored) {
+        }
+    }
+
+    @Test
+    public void testBackpressure() throws Exception {
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        SqlDatasource slow = () -> {
+            blocked.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return pool.getConnection();
+        };
+        try (WriteBehindQueue queue = new WriteBehindQueue(slow, 2, 1, 1, TimeUnit.HOURS)) {
+            queue.submit(1, MERGE, 1, 1);
+            assertTrue(blocked.await(5, TimeUnit.SECONDS));
+            assertTrue(queue.offer(2, MERGE, 2, 2));
+            assertTrue(queue.offer(3, MERGE, 3, 3));
+            assertFalse(queue.offer(4, MERGE, 4, 4));
+            assertTrue(queue.offer(3, MERGE, 3, 4));
+            release.countDown();
+        }
+        assertEquals(4, getScore(3));
+    }
+
+    @Test
+    public void testFailure() throws Exception {
+        try (WriteBehindQueue queue = new WriteBehindQueue(pool, 10, 10, 1, TimeUnit.HOURS)) {
+            queue.submit(null, MERGE, 1, 1);
+            queue.submit(null, "INSERT INTO missing VALUES (?)", 1);
+            queue.flush();
+            assertEquals(2, queue.getFailures());
+            assertEquals(0, queue.getWrites());
+        }
+        assertEquals(-1, getScore(1));
+    }
+
+    private int getScore(int id) throws Exception {
+        try (Connection connection = pool.getConnection(); Statement statement = connection.createStatement();
+             ResultSet result = statement.executeQuery("SELECT score FROM stats WHERE id = " + id)) {
+            return result.next() ? result.getInt(1) : -1;
+        }
+    }
+}